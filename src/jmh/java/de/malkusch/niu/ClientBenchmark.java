@@ -0,0 +1,64 @@
+package de.malkusch.niu;
+
+import static de.malkusch.niu.Resources.login;
+import static de.malkusch.niu.Retry.Configuration.DISABLED;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.malkusch.niu.Authentication.Token;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ClientBenchmark {
+
+    private static final String LOGIN_URL = "https://account-fk.niu.com/v3/api/oauth2/token";
+
+    record Login(Data data, String desc, int status) {
+        record Data(Token token) {
+            record Token(String access_token, Instant token_expires_in) {
+            }
+        }
+    }
+
+    private Client client;
+    private final Token token = new Token("any_token", Instant.MAX);
+    private final Field field = new Field("sn", "N1GPA1A1B1C1D1E");
+
+    @Setup
+    public void setup() {
+        var http = new InMemoryTransport().respond("/v3/api/oauth2/token", login());
+        client = new Client(http, Retry.build(DISABLED), Client.DEFAULT_USER_AGENT);
+    }
+
+    @Benchmark
+    public Login get() throws IOException {
+        return client.get(Login.class, LOGIN_URL, token);
+    }
+
+    @Benchmark
+    public Login post() throws IOException {
+        return client.post(Login.class, LOGIN_URL, token, field);
+    }
+
+    @Benchmark
+    public Login getAsync() {
+        return client.getAsync(Login.class, LOGIN_URL, token).join();
+    }
+}
@@ -0,0 +1,51 @@
+package de.malkusch.niu;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class FieldBenchmark {
+
+    private final Field serialNumber = new Field("sn", "N1GPA1A1B1C1D1E");
+
+    private final Field[] login = {
+            new Field("countryCode", "49"),
+            new Field("app_id", "niu_8xt1afu6"),
+            new Field("grant_type", "password"),
+            new Field("account", "john.doe+niu@example.org"),
+            new Field("password", "5f4dcc3b5aa765d61d8327deb882cf99") };
+
+    private final Form refreshToken = Form.of(new Field("app_id", "niu_8xt1afu6"),
+            new Field("grant_type", "refresh_token"));
+
+    private final Field token = new Field("refresh_token", "eyJhbGciOiJIUzI1NiIsInR5cCI6IkpXVCJ9.e30");
+
+    @Benchmark
+    public byte[] serialNumber() {
+        return Form.of(serialNumber).bytes();
+    }
+
+    @Benchmark
+    public byte[] login() {
+        return Form.of(login).bytes();
+    }
+
+    @Benchmark
+    public byte[] refreshToken() {
+        return refreshToken.with(token).bytes();
+    }
+}
@@ -0,0 +1,59 @@
+package de.malkusch.niu;
+
+import static de.malkusch.niu.Resources.login;
+import static de.malkusch.niu.Resources.resource;
+import static de.malkusch.niu.Retry.Configuration.DISABLED;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.malkusch.niu.Niu.BatteryInfo;
+import de.malkusch.niu.Niu.VehicleInfo;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class NiuBenchmark {
+
+    private static final String SN = "N1GPA1A1B1C1D1E";
+
+    private Niu niu;
+
+    @Setup
+    public void setup() throws IOException {
+        var http = new InMemoryTransport() //
+                .respond("/v3/api/oauth2/token", login()) //
+                .respond("/v3/motor_data/index_info", resource("index_info.json")) //
+                .respond("/v3/motor_data/battery_info", resource("battery_info.json"));
+        var client = new Client(http, Retry.build(DISABLED), Client.DEFAULT_USER_AGENT);
+        var authentication = new Authentication("any_account", "any_pwd", "49", Duration.ofSeconds(10),
+                Authentication.NO_BACKGROUND_REFRESH, TokenStore.NONE, client);
+        authentication.token();
+        niu = new Niu(client, authentication, 1);
+    }
+
+    @Benchmark
+    public VehicleInfo vehicle() throws IOException {
+        return niu.vehicle(SN);
+    }
+
+    @Benchmark
+    public BatteryInfo batteryInfo() throws IOException {
+        return niu.batteryInfo(SN);
+    }
+}
@@ -0,0 +1,32 @@
+package de.malkusch.niu;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Reads the test fixtures, which are on the benchmarks' classpath as well.
+ */
+final class Resources {
+
+    private Resources() {
+    }
+
+    static byte[] resource(String name) {
+        try (var resource = Resources.class.getResourceAsStream(name)) {
+            return resource.readAllBytes();
+
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The login.json template with a token which doesn't expire.
+     */
+    static byte[] login() {
+        return new String(resource("login.json"), UTF_8).replace("{{access_token}}", "any_token")
+                .replace("{{token_expires_in}}", "4102444800").getBytes(UTF_8);
+    }
+}
@@ -2,33 +2,82 @@ package de.malkusch.niu;
 
 
 import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.math.BigInteger;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
+import de.malkusch.niu.NiuListener.Grant;
+import de.malkusch.niu.NiuListener.TokenRefreshEvent;
+
+import static de.malkusch.niu.NiuListener.Grant.PASSWORD;
+import static de.malkusch.niu.NiuListener.Grant.REFRESH_TOKEN;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.failedFuture;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 final class Authentication {
 
     private final String account;
-    private final String password;
-    private final String countryCode;
+
+    /**
+     * The password login's body never changes, so it's encoded only once.
+     */
+    private final Form loginForm;
     private final Client client;
     private final static String APP_ID = "niu_8xt1afu6";
 
+    static final Duration NO_BACKGROUND_REFRESH = Duration.ZERO;
+
     public Authentication(String account, String password, String countryCode, Duration expirationWindow, Client client)
             throws IOException {
 
+        this(account, password, countryCode, expirationWindow, NO_BACKGROUND_REFRESH, TokenStore.NONE, client);
+        token();
+    }
+
+    /**
+     * Doesn't login, that happens with the first {@link #token()} or
+     * {@link #tokenAsync()}.
+     *
+     * @param backgroundRefresh
+     *            Renews the token this long before it expires in the
+     *            background. {@link #NO_BACKGROUND_REFRESH} renews only when a
+     *            request finds the token expired.
+     * @param tokenStore
+     *            A still valid stored token skips the login.
+     */
+    public Authentication(String account, String password, String countryCode, Duration expirationWindow,
+            Duration backgroundRefresh, TokenStore tokenStore, Client client) {
+
         this.account = assertNotEmpty(account, "account must not be empty");
-        this.password = hashedPassword(assertNotEmpty(password, "password must not be empty"));
-        this.countryCode = assertNotEmpty(countryCode, "countryCode must not be empty");
+        loginForm = Form.of( //
+                new Field("countryCode", assertNotEmpty(countryCode, "countryCode must not be empty")),
+                new Field("app_id", APP_ID),
+                new Field("grant_type", "password"),
+                new Field("account", account),
+                new Field("password", hashedPassword(assertNotEmpty(password, "password must not be empty"))));
         this.expirationWindow = requireNonNull(expirationWindow);
+        this.backgroundRefresh = requireNonNull(backgroundRefresh);
+        if (backgroundRefresh.isNegative()) {
+            throw new IllegalArgumentException("backgroundRefresh must not be negative");
+        }
+        this.tokenStore = requireNonNull(tokenStore);
         this.client = requireNonNull(client);
 
-        refreshToken();
+        token = loadToken();
+        if (isValid(token)) {
+            scheduleBackgroundRefresh(token.expiresAt.minus(backgroundRefresh));
+        }
     }
 
     private static String hashedPassword(String password) {
@@ -50,42 +99,291 @@ final class Authentication {
         return value;
     }
 
-    record Token(String value, Instant expiresAt) {
+    record Token(String value, Instant expiresAt, String refreshToken, Instant refreshTokenExpiresAt) {
+
+        Token(String value, Instant expiresAt) {
+            this(value, expiresAt, null, null);
+        }
+
         boolean isExpired() {
             return Instant.now().isAfter(expiresAt);
         }
+
+        boolean isRefreshable() {
+            return refreshToken != null && refreshTokenExpiresAt != null
+                    && Instant.now().isBefore(refreshTokenExpiresAt);
+        }
     }
 
     private volatile Token token;
 
+    private static boolean isValid(Token token) {
+        return token != null && !token.isExpired();
+    }
+
     public Token token() throws IOException {
-        if (token.isExpired()) {
-            refreshToken();
+        return token(Deadline.NONE);
+    }
+
+    /**
+     * A caller which waits for another caller's refresh waits at most until
+     * its own {@code deadline}. If that refresh ran out of the other caller's
+     * deadline, the caller refreshes again within its own.
+     */
+    Token token(Deadline deadline) throws IOException {
+        while (true) {
+            var token = this.token;
+            if (isValid(token)) {
+                return token;
+            }
+            var started = new AtomicBoolean();
+            try {
+                return deadline.get(refresh(true, () -> {
+                    started.set(true);
+                    try {
+                        return completedFuture(refreshToken(deadline));
+
+                    } catch (IOException | RuntimeException e) {
+                        return failedFuture(e);
+                    }
+                }));
+
+            } catch (DeadlineExceededException e) {
+                if (!isOthersDeadline(e, started, deadline)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    public CompletableFuture<Token> tokenAsync() {
+        return tokenAsync(Deadline.NONE);
+    }
+
+    CompletableFuture<Token> tokenAsync(Deadline deadline) {
+        var token = this.token;
+        if (isValid(token)) {
+            return completedFuture(token);
+        }
+        var started = new AtomicBoolean();
+        var refreshed = deadline.bound(refresh(true, () -> {
+            started.set(true);
+            return refreshTokenAsync(deadline);
+        }));
+        return refreshed.exceptionallyCompose(error -> {
+            var cause = Futures.unwrap(error);
+            if (isOthersDeadline(cause, started, deadline)) {
+                return tokenAsync(deadline);
+            }
+            return failedFuture(cause);
+        });
+    }
+
+    /**
+     * Whether a refresh failed because it ran out of another caller's
+     * deadline, while this caller's deadline still has time left.
+     */
+    private static boolean isOthersDeadline(Throwable failure, AtomicBoolean started, Deadline deadline) {
+        return failure instanceof DeadlineExceededException && !started.get() && deadline.covers(Duration.ZERO);
+    }
+
+    @FunctionalInterface
+    interface Call<T> {
+        T call(Token token) throws IOException;
+    }
+
+    /**
+     * Replays the call once with a renewed token, if the server rejected the
+     * token with 401.
+     */
+    <T> T authenticated(Call<T> call) throws IOException {
+        return authenticated(Deadline.NONE, call);
+    }
+
+    /**
+     * The {@code deadline} covers the token refresh and the replay as well.
+     */
+    <T> T authenticated(Deadline deadline, Call<T> call) throws IOException {
+        var token = token(deadline);
+        try {
+            return call.call(token);
+
+        } catch (HttpStatusException e) {
+            if (!e.isUnauthorized()) {
+                throw e;
+            }
+            invalidate(token);
+            return call.call(token(deadline));
+        }
+    }
+
+    <T> CompletableFuture<T> authenticatedAsync(Function<Token, CompletableFuture<T>> call) {
+        return authenticatedAsync(Deadline.NONE, call);
+    }
+
+    <T> CompletableFuture<T> authenticatedAsync(Deadline deadline, Function<Token, CompletableFuture<T>> call) {
+        return tokenAsync(deadline).thenCompose(token -> call.apply(token).exceptionallyCompose(error -> {
+            var cause = Futures.unwrap(error);
+            if (cause instanceof HttpStatusException e && e.isUnauthorized()) {
+                invalidate(token);
+                return tokenAsync(deadline).thenCompose(call);
+            }
+            return failedFuture(cause);
+        }));
+    }
+
+    /**
+     * Expires the token, unless it was already renewed. The refresh token
+     * stays usable.
+     */
+    private void invalidate(Token rejected) {
+        synchronized (lock) {
+            if (token == rejected) {
+                token = new Token(rejected.value, Instant.EPOCH, rejected.refreshToken,
+                        rejected.refreshTokenExpiresAt);
+            }
+        }
+    }
+
+    private final Object lock = new Object();
+    private CompletableFuture<Token> refreshing;
+
+    /**
+     * Runs at most one refresh at a time, concurrent callers wait for the
+     * running one.
+     */
+    private CompletableFuture<Token> refresh(boolean onlyExpired, Supplier<CompletableFuture<Token>> refresher) {
+        CompletableFuture<Token> refresh;
+        synchronized (lock) {
+            var token = this.token;
+            if (onlyExpired && isValid(token)) {
+                return completedFuture(token);
+            }
+            if (refreshing != null) {
+                return refreshing;
+            }
+            refresh = refreshing = new CompletableFuture<>();
         }
-        return token;
+        CompletableFuture<Token> refreshed;
+        try {
+            refreshed = refresher.get();
+
+        } catch (RuntimeException | Error e) {
+            refreshed = failedFuture(e);
+        }
+        refreshed.whenComplete((token, error) -> {
+            synchronized (lock) {
+                refreshing = null;
+            }
+            if (error != null) {
+                refresh.completeExceptionally(Futures.unwrap(error));
+            } else {
+                refresh.complete(token);
+            }
+        });
+        return refresh;
     }
 
     private final Duration expirationWindow;
-    private static final String LOGIN_URI = "https://account-fk.niu.com/v3/api/oauth2/token";
+    private final Duration backgroundRefresh;
+    private final TokenStore tokenStore;
+    private static final RequestTemplate LOGIN_REQUEST = RequestTemplate
+            .of("https://account-fk.niu.com/v3/api/oauth2/token");
+    private static final Form REFRESH_TOKEN_FORM = Form.of(new Field("app_id", APP_ID),
+            new Field("grant_type", "refresh_token"));
     private static final Duration EXPIRES_AT_FALLBACK = Duration.ofHours(1);
+    private static final Duration BACKGROUND_RETRY_DELAY = Duration.ofSeconds(10);
 
-    private void refreshToken() throws IOException {
+    private record LoginResponse(Data data, String desc, int status) {
+        record Data(Token token) {
+            record Token(String access_token, Instant token_expires_in, String refresh_token,
+                    Instant refresh_token_expires_in) {
+            }
+        }
+    }
+
+    private Token refreshToken(Deadline deadline) throws IOException {
+        var token = this.token;
+        if (token != null && token.isRefreshable()) {
+            try {
+                return login(REFRESH_TOKEN, refreshTokenForm(token), deadline);
 
-        // Todo Use refresh token
+            } catch (DeadlineExceededException e) {
+                throw e;
+
+            } catch (IOException e) {
+                // Fall back to the password login
+            }
+        }
+        return login(PASSWORD, loginForm, deadline);
+    }
 
-        record Response(Data data, String desc, int status) {
-            record Data(Token token) {
-                record Token(String access_token, Instant token_expires_in) {
+    private CompletableFuture<Token> refreshTokenAsync(Deadline deadline) {
+        var token = this.token;
+        if (token != null && token.isRefreshable()) {
+            return loginAsync(REFRESH_TOKEN, refreshTokenForm(token), deadline).exceptionallyCompose(e -> {
+                var cause = Futures.unwrap(e);
+                if (cause instanceof DeadlineExceededException) {
+                    return failedFuture(cause);
                 }
+                return loginAsync(PASSWORD, loginForm, deadline);
+            });
+        }
+        return loginAsync(PASSWORD, loginForm, deadline);
+    }
+
+    /**
+     * Logins of all accounts sharing a {@link NiuTransport} are limited by
+     * its login throttle.
+     */
+    private Token login(Grant grant, Form form, Deadline deadline) throws IOException {
+        var logins = client.transport().logins();
+        try {
+            if (deadline.isNone()) {
+                logins.acquireInterruptibly();
+
+            } else if (!logins.tryAcquire(deadline.remaining())) {
+                throw deadline.exceeded(null);
             }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for login", e);
         }
-        var response = client.post(Response.class, LOGIN_URI,
-                new Field("countryCode", countryCode),
-                new Field("app_id", APP_ID),
-                new Field("grant_type", "password"),
-                new Field("account", account),
-                new Field("password", password));
+        var started = System.nanoTime();
+        try {
+            var token = updateToken(client.post(LoginResponse.class, LOGIN_REQUEST, null, deadline, form));
+            refreshed(grant, started, null);
+            return token;
+
+        } catch (IOException | RuntimeException e) {
+            refreshed(grant, started, e);
+            throw e;
+
+        } finally {
+            logins.release();
+        }
+    }
+
+    private CompletableFuture<Token> loginAsync(Grant grant, Form form, Deadline deadline) {
+        return client.transport().logins().submit(() -> {
+            var started = System.nanoTime();
+            var token = Futures.map(client.postAsync(LoginResponse.class, LOGIN_REQUEST, null, deadline, form),
+                    this::updateToken);
+            return Futures.peek(token, (it, error) -> refreshed(grant, started, error));
+        });
+    }
+
+    private void refreshed(Grant grant, long started, Throwable failure) {
+        client.listener()
+                .onTokenRefresh(new TokenRefreshEvent(grant, Duration.ofNanos(System.nanoTime() - started), failure));
+    }
+
+    private static Form refreshTokenForm(Token token) {
+        return REFRESH_TOKEN_FORM.with(new Field("refresh_token", token.refreshToken));
+    }
 
+    private Token updateToken(LoginResponse response) throws IOException {
         if (response.status != 0) {
             throw new IOException(String.format("Can't authenticate: [%d] %s", response.status, response.desc));
         }
@@ -110,6 +408,64 @@ final class Authentication {
             throw new IOException("Couldn't decode token: " + response.desc, e);
         }
 
-        this.token = new Token(token, expiresAt);
+        var updated = new Token(token, expiresAt, response.data.token.refresh_token,
+                response.data.token.refresh_token_expires_in);
+        this.token = updated;
+        storeToken(updated);
+        scheduleBackgroundRefresh(updated.expiresAt.minus(backgroundRefresh));
+        return updated;
+    }
+
+    private Token loadToken() {
+        try {
+            return tokenStore.load(account)
+                    .map(it -> new Token(it.value(), it.expiresAt(), it.refreshToken(), it.refreshTokenExpiresAt()))
+                    .orElse(null);
+
+        } catch (IOException | RuntimeException e) {
+            // An unreadable token is no different from a missing one
+            return null;
+        }
+    }
+
+    private void storeToken(Token token) {
+        try {
+            tokenStore.store(account, new TokenStore.StoredToken(token.value, token.expiresAt, token.refreshToken,
+                    token.refreshTokenExpiresAt));
+
+        } catch (IOException | RuntimeException e) {
+            // The next start will login again
+        }
+    }
+
+    private ScheduledFuture<?> backgroundRefreshTask;
+
+    private void scheduleBackgroundRefresh(Instant at) {
+        if (backgroundRefresh.isZero()) {
+            return;
+        }
+        var delay = Math.max(0, Duration.between(Instant.now(), at).toMillis());
+
+        // The scheduler must not keep an abandoned Authentication alive
+        var reference = new WeakReference<>(this);
+        synchronized (lock) {
+            if (backgroundRefreshTask != null) {
+                backgroundRefreshTask.cancel(false);
+            }
+            backgroundRefreshTask = Futures.SCHEDULER.schedule(() -> {
+                var authentication = reference.get();
+                if (authentication != null) {
+                    authentication.backgroundRefresh();
+                }
+            }, delay, MILLISECONDS);
+        }
+    }
+
+    private void backgroundRefresh() {
+        refresh(false, () -> refreshTokenAsync(Deadline.NONE)).whenComplete((token, error) -> {
+            if (error != null) {
+                scheduleBackgroundRefresh(Instant.now().plus(BACKGROUND_RETRY_DELAY));
+            }
+        });
     }
 }
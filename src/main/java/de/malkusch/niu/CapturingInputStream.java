@@ -0,0 +1,64 @@
+package de.malkusch.niu;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Remembers the first bytes read from the wrapped stream, so that a failed
+ * decoding can be reported without buffering the whole body.
+ */
+final class CapturingInputStream extends FilterInputStream {
+
+    private final byte[] capture;
+    private int captured;
+    private boolean truncated;
+    private long count;
+
+    CapturingInputStream(InputStream in, int limit) {
+        super(in);
+        capture = new byte[limit];
+    }
+
+    @Override
+    public int read() throws IOException {
+        var read = super.read();
+        if (read >= 0) {
+            count++;
+            if (captured < capture.length) {
+                capture[captured++] = (byte) read;
+            } else {
+                truncated = true;
+            }
+        }
+        return read;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        var read = super.read(buffer, offset, length);
+        if (read > 0) {
+            count += read;
+            var capturing = Math.min(read, capture.length - captured);
+            System.arraycopy(buffer, offset, capture, captured, capturing);
+            captured += capturing;
+            truncated |= capturing < read;
+        }
+        return read;
+    }
+
+    long count() {
+        return count;
+    }
+
+    String captured() {
+        return preview(capture, captured, truncated);
+    }
+
+    private static String preview(byte[] bytes, int length, boolean truncated) {
+        var preview = new String(bytes, 0, length, UTF_8);
+        return truncated ? preview + "..." : preview;
+    }
+}
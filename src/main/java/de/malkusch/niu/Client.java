@@ -1,64 +1,156 @@
 package de.malkusch.niu;
 
 import de.malkusch.niu.Authentication.Token;
+import de.malkusch.niu.HttpTransport.Response;
+import de.malkusch.niu.NiuListener.AttemptEvent;
+import de.malkusch.niu.NiuListener.Outcome;
+import de.malkusch.niu.NiuListener.RequestEvent;
 import tools.jackson.core.JacksonException;
+import tools.jackson.core.exc.JacksonIOException;
 import tools.jackson.databind.ObjectMapper;
-import tools.jackson.databind.json.JsonMapper;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpRequest.BodyPublishers;
-import java.net.http.HttpResponse.BodyHandlers;
 import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
-import static java.net.URLEncoder.encode;
-import static java.nio.charset.StandardCharsets.UTF_8;
-import static java.util.Arrays.stream;
+import static java.time.format.DateTimeFormatter.RFC_1123_DATE_TIME;
 import static java.util.Objects.requireNonNull;
-import static tools.jackson.databind.DeserializationFeature.FAIL_ON_NULL_FOR_PRIMITIVES;
-import static tools.jackson.databind.DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 record Field(String name, String value) {
-
-    String urlencoded() {
-        return encode(name, UTF_8) + "=" + encode(value, UTF_8);
-    }
 }
 
 final class Client {
 
-    private static final String DEFAULT_USER_AGENT = "manager/4.6.2 (android; Unknown);brand=Unknown;model=Unknown;clientIdentifier=Overseas;lang=en-US";
+    static final String DEFAULT_USER_AGENT = "manager/4.6.2 (android; Unknown);brand=Unknown;model=Unknown;clientIdentifier=Overseas;lang=en-US";
+
+    private static final int DIAGNOSTIC_CAPTURE = 1024;
+    private static final int INFLATE_BUFFER = 8 * 1024;
+    private static final String IDENTITY = "identity";
 
     private final String userAgent;
     private final Duration timeout;
-    private final HttpClient httpClient;
+    private final NiuTransport transport;
+    private final HttpTransport http;
     private final ObjectMapper mapper;
-    private final Retry<String> retry;
+    private final Retry retry;
+    private final ResponseCache cache;
+    private final NiuListener listener;
+    private final Fingerprints fingerprints;
+    private final RateLimiter rateLimiter;
+    private final Hedging hedging;
+    private final ConcurrencyLimiter concurrencyLimiter;
+    private final HttpRequest.Builder getPrototype;
+    private final HttpRequest.Builder postPrototype;
+    private final boolean compression;
 
-    public Client(Duration timeout, Retry<String> retry) {
+    public Client(Duration timeout, Retry retry) {
         this(timeout, retry, DEFAULT_USER_AGENT);
     }
 
-    public Client(Duration timeout, Retry<String> retry, String userAgent) {
-        this(HttpClient.newBuilder().connectTimeout(timeout).build(), retry, userAgent);
+    public Client(Duration timeout, Retry retry, String userAgent) {
+        this(timeout, retry, userAgent, ResponseCache.DISABLED, NiuListener.NONE);
+    }
+
+    public Client(Duration timeout, Retry retry, String userAgent, ResponseCache cache, NiuListener listener) {
+        this(timeout, retry, userAgent, cache, listener, Fingerprints.DISABLED, RateLimiter.DISABLED,
+                Hedging.DISABLED, ConcurrencyLimiter.DISABLED);
+    }
+
+    /**
+     * Asks for compressed responses, like {@link Niu.Builder} does by default.
+     */
+    public Client(Duration timeout, Retry retry, String userAgent, ResponseCache cache, NiuListener listener,
+            Fingerprints fingerprints, RateLimiter rateLimiter, Hedging hedging,
+            ConcurrencyLimiter concurrencyLimiter) {
+
+        this(new NiuTransport(HttpClient.newBuilder().connectTimeout(timeout).build(), true), retry, userAgent,
+                cache, listener, fingerprints, rateLimiter, hedging, concurrencyLimiter);
+    }
+
+    Client(HttpClient httpClient, Retry retry, String userAgent) {
+        this(httpClient, retry, userAgent, ResponseCache.DISABLED, NiuListener.NONE);
     }
 
-    Client(HttpClient httpClient, Retry<String> retry, String userAgent) {
-        this.httpClient = requireNonNull(httpClient);
-        this.timeout = requireNonNull(httpClient.connectTimeout().get());
+    Client(HttpTransport http, Retry retry, String userAgent) {
+        this(new NiuTransport(http, false), retry, userAgent, ResponseCache.DISABLED, NiuListener.NONE,
+                Fingerprints.DISABLED, RateLimiter.DISABLED, Hedging.DISABLED, ConcurrencyLimiter.DISABLED);
+    }
+
+    Client(HttpClient httpClient, Retry retry, String userAgent, ResponseCache cache, NiuListener listener) {
+        this(httpClient, retry, userAgent, cache, listener, Fingerprints.DISABLED, RateLimiter.DISABLED,
+                Hedging.DISABLED, ConcurrencyLimiter.DISABLED);
+    }
+
+    Client(HttpClient httpClient, Retry retry, String userAgent, ResponseCache cache, NiuListener listener,
+            Fingerprints fingerprints, RateLimiter rateLimiter, Hedging hedging,
+            ConcurrencyLimiter concurrencyLimiter) {
+
+        this(new NiuTransport(httpClient), retry, userAgent, cache, listener, fingerprints, rateLimiter, hedging,
+                concurrencyLimiter);
+    }
+
+    public Client(NiuTransport transport, Retry retry, String userAgent, ResponseCache cache, NiuListener listener,
+            Fingerprints fingerprints, RateLimiter rateLimiter, Hedging hedging,
+            ConcurrencyLimiter concurrencyLimiter) {
+        this.transport = requireNonNull(transport);
+        this.http = transport.http();
+        this.mapper = transport.mapper();
+        this.timeout = requireNonNull(http.timeout());
         this.retry = retry;
+        this.cache = requireNonNull(cache);
+        this.listener = Listeners.shielding(requireNonNull(listener));
+        this.fingerprints = requireNonNull(fingerprints);
+        this.rateLimiter = requireNonNull(rateLimiter);
+        this.hedging = requireNonNull(hedging);
+        this.concurrencyLimiter = requireNonNull(concurrencyLimiter);
+        this.compression = transport.compression();
 
         this.userAgent = requireNonNull(userAgent);
         if (userAgent.isEmpty()) {
             throw new IllegalArgumentException("userAgent must not be empty");
         }
 
-        mapper = JsonMapper.builder()
-                .configure(FAIL_ON_UNKNOWN_PROPERTIES, false)
-                .configure(FAIL_ON_NULL_FOR_PRIMITIVES, false)
-                .build();
+        // Each request copies its headers from these
+        var prototype = HttpRequest.newBuilder().setHeader("User-Agent", userAgent).timeout(timeout);
+        if (compression) {
+            prototype.setHeader("Accept-Encoding", "gzip, deflate");
+        }
+        getPrototype = prototype.copy().GET();
+        postPrototype = prototype.copy().setHeader("Content-Type", "application/x-www-form-urlencoded");
+    }
+
+    NiuListener listener() {
+        return listener;
+    }
+
+    NiuTransport transport() {
+        return transport;
+    }
+
+    ConcurrencyLimiter concurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    boolean isFingerprinted(String url) {
+        return fingerprints.isEnabled(url);
     }
 
     public <T> T post(Class<T> type, String url, Field... fields) throws IOException {
@@ -66,52 +158,552 @@ final class Client {
     }
 
     public <T> T post(Class<T> type, String url, Token token, Field... fields) throws IOException {
-        var body = stream(fields).map(Field::urlencoded).reduce("", (f1, f2) -> f1 + "&" + f2);
-        var requestBuilder = request(url).POST(BodyPublishers.ofString(body)).setHeader("Content-Type",
-                "application/x-www-form-urlencoded");
-        return send(type, token, requestBuilder);
+        return post(type, url, token, Deadline.NONE, fields);
+    }
+
+    public <T> T post(Class<T> type, String url, Token token, Deadline deadline, Field... fields)
+            throws IOException {
+
+        return post(type, RequestTemplate.of(url), token, deadline, Form.of(fields));
+    }
+
+    public <T> T post(Class<T> type, RequestTemplate template, Token token, Deadline deadline, Form body)
+            throws IOException {
+
+        var url = template.url();
+        return cache.get(type, url, body, deadline,
+                () -> send(type, template.endpoint(), url, body, post(template.uri(), token, body),
+                        deadline));
     }
 
     public <T> T get(Class<T> type, String url, Token token) throws IOException {
-        return send(type, token, request(url).GET());
+        return get(type, url, token, Deadline.NONE);
+    }
+
+    /**
+     * Hedged endpoints are sent through the async path, which can race two
+     * requests without extra threads.
+     */
+    public <T> T get(Class<T> type, String url, Token token, Deadline deadline) throws IOException {
+        return get(type, RequestTemplate.of(url), token, deadline, Form.EMPTY);
+    }
+
+    public <T> T get(Class<T> type, RequestTemplate template, Token token, Deadline deadline, Form query)
+            throws IOException {
+
+        var url = template.url(query);
+        if (hedging.isEnabled(url)) {
+            return Futures.get(getAsync(type, template, token, deadline, query));
+        }
+        return cache.get(type, url, null, deadline,
+                () -> send(type, template.endpoint(), url, null, get(template.uri(query, url), token), deadline));
+    }
+
+    public <T> CompletableFuture<T> postAsync(Class<T> type, String url, Field... fields) {
+        return postAsync(type, url, null, fields);
     }
 
-    private <T> T send(Class<T> type, Token token, HttpRequest.Builder requestBuilder) throws IOException {
+    public <T> CompletableFuture<T> postAsync(Class<T> type, String url, Token token, Field... fields) {
+        return postAsync(type, url, token, Deadline.NONE, fields);
+    }
+
+    public <T> CompletableFuture<T> postAsync(Class<T> type, String url, Token token, Deadline deadline,
+            Field... fields) {
+
+        return postAsync(type, RequestTemplate.of(url), token, deadline, Form.of(fields));
+    }
+
+    public <T> CompletableFuture<T> postAsync(Class<T> type, RequestTemplate template, Token token,
+            Deadline deadline, Form body) {
+
+        var url = template.url();
+        return cache.getAsync(type, url, body, deadline, () -> sendAsync(type, template.endpoint(), url, body,
+                post(template.uri(), token, body), deadline));
+    }
+
+    public <T> CompletableFuture<T> getAsync(Class<T> type, String url, Token token) {
+        return getAsync(type, url, token, Deadline.NONE);
+    }
+
+    public <T> CompletableFuture<T> getAsync(Class<T> type, String url, Token token, Deadline deadline) {
+        return getAsync(type, RequestTemplate.of(url), token, deadline, Form.EMPTY);
+    }
+
+    public <T> CompletableFuture<T> getAsync(Class<T> type, RequestTemplate template, Token token,
+            Deadline deadline, Form query) {
+
+        var url = template.url(query);
+        return cache.getAsync(type, url, null, deadline, () -> sendAsync(type, template.endpoint(), url, null,
+                get(template.uri(query, url), token), deadline));
+    }
+
+    private HttpRequest post(URI uri, Token token, Form body) {
+        return build(token, postPrototype.copy().uri(uri).POST(BodyPublishers.ofByteArray(body.bytes())));
+    }
+
+    private HttpRequest get(URI uri, Token token) {
+        return build(token, getPrototype.copy().uri(uri));
+    }
+
+    private static HttpRequest build(Token token, HttpRequest.Builder requestBuilder) {
         if (token != null) {
             requestBuilder.setHeader("token", token.value());
         }
-        var request = requestBuilder.build();
-        String response = null;
+        return requestBuilder.build();
+    }
+
+    private <T> T send(Class<T> type, String endpoint, String url, Form body, HttpRequest request,
+            Deadline deadline) throws IOException {
+
+        var exchange = new Exchange(endpoint, deadline);
         try {
+            var response = retry.<T, IOException, InterruptedException>retry(deadline,
+                    () -> _send_unsafe(type, url, body, request, exchange));
+            exchange.completed(null);
+            return response;
+
+        } catch (UncheckedIOException e) {
+            throw exchange.completed(e.getCause());
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw exchange.completed(new IOException(e));
+
+        } catch (IOException | RuntimeException | Error e) {
+            exchange.completed(e);
+            throw e;
+        }
+    }
+
+    private <T> CompletableFuture<T> sendAsync(Class<T> type, String endpoint, String url, Form body,
+            HttpRequest request, Deadline deadline) {
+
+        var exchange = new Exchange(endpoint, deadline);
+        var response = new CompletableFuture<T>();
+        retry.retryAsync(deadline, () -> _send_unsafe_async(type, url, body, request, exchange))
+                .whenComplete((value, error) -> {
+                    if (error == null) {
+                        exchange.completed(null);
+                        response.complete(value);
+                        return;
+                    }
+                    var failure = Futures.unwrap(error);
+                    if (failure instanceof UncheckedIOException e) {
+                        failure = e.getCause();
+                    }
+                    response.completeExceptionally(exchange.completed(failure));
+                });
+        return response;
+    }
+
+    private <T> T _send_unsafe(Class<T> type, String url, Form requestBody, HttpRequest request, Exchange exchange)
+            throws IOException, InterruptedException {
+
+        var host = request.uri().getHost();
+        rateLimiter.acquire(host, exchange.deadline);
+        concurrencyLimiter.acquire(exchange.deadline);
+        var attempt = slotted(request, exchange.deadline);
+        exchange.attempt();
+        Throwable failure = null;
+        try {
+            var response = http.send(attempt);
+            exchange.status = response.status();
+            rateLimiter.onResponse(host, exchange.status);
+            // Counts the received bytes, before decompression
+            try (var body = new CapturingInputStream(response.body(), 0)) {
+                T decoded;
+                try {
+                    assertSuccess(request, response);
+                    decoded = decode(type, url, requestBody, contentEncoding(response), body, exchange);
+
+                } finally {
+                    exchange.bytes = body.count();
+                }
+                exchange.attempted(null);
+                return decoded;
+            }
+
+        } catch (IOException | InterruptedException | RuntimeException | Error e) {
+            failure = e;
+            exchange.attempted(e);
+            throw e;
+
+        } finally {
+            concurrencyLimiter.release(System.nanoTime() - exchange.attemptStarted,
+                    isOverload(exchange.status, failure));
+        }
+    }
+
+    private <T> CompletableFuture<T> _send_unsafe_async(Class<T> type, String url, Form requestBody,
+            HttpRequest request, Exchange exchange) {
+
+        var host = request.uri().getHost();
+        var acquired = rateLimiter.acquireAsync(host, exchange.deadline)
+                .thenCompose(ignore -> concurrencyLimiter.acquireAsync(exchange.deadline));
+        // Like in the sync path, only attempts which got a slot are reported
+        return Futures.compose(acquired, ignore -> {
+            HttpRequest attempt;
             try {
-                response = retry.<IOException, InterruptedException>retry(() -> _send_unsafe(request));
-                return mapper.readValue(response, type);
+                attempt = slotted(request, exchange.deadline);
+
+            } catch (DeadlineExceededException e) {
+                return CompletableFuture.<T>failedFuture(e);
+            }
+            exchange.attempt();
+            var sent = hedging.isEnabled(request.uri().toString()) ? sendHedged(attempt, exchange.deadline)
+                    : http.sendAsync(attempt);
+            sent.whenComplete((it, error) -> concurrencyLimiter.release(System.nanoTime() - exchange.attemptStarted,
+                    isOverload(it == null ? 0 : it.status(), error)));
+            var response = Futures.map(sent, it -> {
+                exchange.status = it.status();
+                rateLimiter.onResponse(host, exchange.status);
+                // Counts the received bytes, before decompression
+                try (var body = new CapturingInputStream(it.body(), 0)) {
+                    try {
+                        assertSuccess(request, it);
+                        return decode(type, url, requestBody, contentEncoding(it), body, exchange);
+
+                    } finally {
+                        exchange.bytes = body.count();
+                    }
+                }
+            });
+            return Futures.peek(response, (it, error) -> exchange.attempted(error));
+        });
+    }
+
+    /**
+     * Timeouts, connection failures, 408, 429 and server errors lower the
+     * {@link ConcurrencyLimiter}'s limit. Other client errors say nothing
+     * about the backend's load.
+     */
+    private static boolean isOverload(int status, Throwable failure) {
+        if (status == 408 || status == 429 || status >= 500) {
+            return true;
+        }
+        return status == 0 && failure != null;
+    }
+
+    /**
+     * Shortens the request timeout to the time left until the deadline.
+     */
+    private HttpRequest attempt(HttpRequest request, Deadline deadline) throws DeadlineExceededException {
+        if (deadline.isNone()) {
+            return request;
+        }
+        var timeout = deadline.timeout(this.timeout);
+        if (timeout.equals(this.timeout)) {
+            return request;
+        }
+        return HttpRequest.newBuilder(request, (name, value) -> true).timeout(timeout).build();
+    }
+
+    /**
+     * Like {@link #attempt(HttpRequest, Deadline)} for an attempt which got its
+     * slot after queueing, so that the queueing time is subtracted. The slot
+     * is given back, if no time is left.
+     */
+    private HttpRequest slotted(HttpRequest request, Deadline deadline) throws DeadlineExceededException {
+        try {
+            return attempt(request, deadline);
+
+        } catch (DeadlineExceededException e) {
+            concurrencyLimiter.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Sends a second request, if the first one didn't answer within the
+     * endpoint's hedging delay. The first response wins and the other request
+     * is cancelled. The call fails only if both requests failed. The hedge
+     * takes its own slot of the {@link ConcurrencyLimiter}, and its timeout is
+     * shortened to the time left when it's sent.
+     */
+    private CompletableFuture<Response> sendHedged(HttpRequest request, Deadline deadline) {
+        var url = request.uri().toString();
+        var delay = hedging.delay(url);
+        var primary = sendTimed(request, url);
+        if (delay == null) {
+            return primary;
+        }
 
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                throw new IOException(e);
+        var result = new CompletableFuture<Response>();
+        var pending = new AtomicInteger(1);
+        race(result, primary, pending);
+        var hedge = new AtomicReference<CompletableFuture<Response>>();
+        var timer = Futures.SCHEDULER.schedule(() -> {
+            if (result.isDone() || !hedging.tryHedge()) {
+                return;
+            }
+            pending.incrementAndGet();
+            var hedged = rateLimiter.acquireAsync(request.uri().getHost(), deadline)
+                    .thenCompose(ignore -> concurrencyLimiter.acquireAsync(deadline)).thenCompose(ignore -> {
+                        if (result.isDone()) {
+                            concurrencyLimiter.release();
+                            return CompletableFuture.<Response>failedFuture(new CancellationException());
+                        }
+                        HttpRequest attempt;
+                        try {
+                            attempt = attempt(request, deadline);
+
+                        } catch (DeadlineExceededException e) {
+                            concurrencyLimiter.release();
+                            return CompletableFuture.<Response>failedFuture(e);
+                        }
+                        var started = System.nanoTime();
+                        var sent = sendTimed(attempt, url);
+                        sent.whenComplete((it, error) -> {
+                            if (error != null && Futures.unwrap(error) instanceof CancellationException) {
+                                // A lost race says nothing about the backend's load
+                                concurrencyLimiter.release();
+
+                            } else {
+                                concurrencyLimiter.release(System.nanoTime() - started,
+                                        isOverload(it == null ? 0 : it.status(), error));
+                            }
+                        });
+
+                        // Cancelling the composed future wouldn't reach the request
+                        hedge.set(sent);
+                        if (result.isDone()) {
+                            sent.cancel(true);
+                        }
+                        return sent;
+                    });
+            race(result, hedged, pending);
+        }, delay.toNanos(), NANOSECONDS);
+
+        result.whenComplete((response, error) -> {
+            timer.cancel(false);
+            primary.cancel(true);
+            var hedged = hedge.get();
+            if (hedged != null) {
+                hedged.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    private static <T> void race(CompletableFuture<T> result, CompletableFuture<T> candidate, AtomicInteger pending) {
+        candidate.whenComplete((value, error) -> {
+            if (error == null) {
+                result.complete(value);
+
+            } else if (pending.decrementAndGet() == 0) {
+                result.completeExceptionally(Futures.unwrap(error));
+            }
+        });
+    }
 
+    /**
+     * Feeds the latency into {@link Hedging}. A cancelled request counts with
+     * the time until it was cancelled, so that the slow requests which lost a
+     * race still shift the percentile.
+     */
+    private CompletableFuture<Response> sendTimed(HttpRequest request, String url) {
+        var started = System.nanoTime();
+        var response = http.sendAsync(request);
+        response.whenComplete((it, error) -> {
+            if (error == null || Futures.unwrap(error) instanceof CancellationException) {
+                hedging.record(url, System.nanoTime() - started);
             }
+        });
+        return response;
+    }
+
+    @FunctionalInterface
+    private interface Decoder<T> {
+        T decode() throws IOException;
+    }
+
+    /**
+     * Returns the previously decoded value, if the body didn't change since
+     * the last call.
+     */
+    private <T> T decodeUnlessUnchanged(Class<T> type, String url, Form requestBody, byte[] payload,
+            Exchange exchange, Decoder<T> decoder) throws IOException {
+
+        var fingerprint = Fingerprints.Fingerprint.of(payload);
+        var unchanged = fingerprints.unchanged(type, url, requestBody, fingerprint);
+        if (unchanged != null) {
+            exchange.unchanged = true;
+            return unchanged;
+        }
+        var decoded = decoder.decode();
+        fingerprints.store(type, url, requestBody, fingerprint, decoded);
+        return decoded;
+    }
+
+    /**
+     * Decodes the body of a successful attempt, for the sync and async path
+     * alike.
+     */
+    private <T> T decode(Class<T> type, String url, Form requestBody, String encoding, InputStream body,
+            Exchange exchange) throws IOException {
+
+        if (fingerprints.isEnabled(url)) {
+            var payload = body.readAllBytes();
+            return decodeUnlessUnchanged(type, url, requestBody, payload, exchange,
+                    () -> decode(type, encoding, new ByteArrayInputStream(payload), exchange));
+        }
+        return decode(type, encoding, body, exchange);
+    }
+
+    private String contentEncoding(Response response) {
+        if (!compression) {
+            return IDENTITY;
+        }
+        return response.headers().firstValue("Content-Encoding").map(it -> it.trim().toLowerCase(Locale.ROOT))
+                .orElse(IDENTITY);
+    }
+
+    /**
+     * Decompresses the body while it's read. An encoding which wasn't asked
+     * for fails.
+     */
+    private static InputStream decompressing(String encoding, InputStream body) throws IOException {
+        return switch (encoding) {
+        case IDENTITY -> body;
+        case "gzip", "x-gzip" -> new GZIPInputStream(body, INFLATE_BUFFER);
+        case "deflate" -> new InflaterInputStream(body);
+        default -> throw new IOException("Unsupported Content-Encoding " + encoding);
+        };
+    }
+
+    /**
+     * Decodes straight from the decompressing stream, without buffering the
+     * uncompressed body.
+     */
+    private <T> T decode(Class<T> type, String encoding, InputStream payload, Exchange exchange)
+            throws IOException {
+
+        try (var body = new CapturingInputStream(decompressing(encoding, payload), DIAGNOSTIC_CAPTURE)) {
+            var decoded = decode(type, body, exchange);
+
+            // Drain the rest, so that the connection can be reused
+            body.transferTo(OutputStream.nullOutputStream());
+            exchange.uncompressedBytes = body.count();
+            return decoded;
+        }
+    }
+
+    /**
+     * Decodes straight from the response stream. JSON errors are thrown as
+     * {@link UncheckedIOException}, as retrying wouldn't fix them.
+     */
+    private <T> T decode(Class<T> type, CapturingInputStream body, Exchange exchange) throws IOException {
+        var started = System.nanoTime();
+        try {
+            return mapper.readValue(body, type);
+
+        } catch (JacksonIOException e) {
+            throw e.getCause();
+
         } catch (JacksonException e) {
-            throw new IOException("Failed parsing JSON:\n" + response, e);
+            exchange.outcome = Outcome.DECODE_ERROR;
+            throw new UncheckedIOException(new IOException("Failed parsing JSON:\n" + body.captured(), e));
+
+        } finally {
+            exchange.decoding += System.nanoTime() - started;
         }
     }
 
-    private String _send_unsafe(HttpRequest request) throws IOException, InterruptedException {
-        var response = httpClient.send(request, BodyHandlers.ofString());
+    /**
+     * Tracks one call across its attempts for the {@link NiuListener}. Attempts
+     * are sequential, so there are no concurrent writes.
+     */
+    private final class Exchange {
 
-        if (response.statusCode() < 100) {
-            throw new IOException("Query " + request + " failed with response code " + response.statusCode());
+        private final String endpoint;
+        private final Deadline deadline;
+        private final long started = System.nanoTime();
+        private volatile long attemptStarted;
+        private volatile int attempts;
+        private volatile int status;
+        private volatile long bytes;
+        private volatile long uncompressedBytes;
+        private volatile long decoding;
+        private volatile Outcome outcome;
+        private volatile boolean unchanged;
 
-        } else if (response.statusCode() < 400) {
-            return response.body();
+        Exchange(String endpoint, Deadline deadline) {
+            this.endpoint = endpoint;
+            this.deadline = deadline;
+        }
 
-        } else {
-            throw new IOException("Query " + request + " failed with response code " + response.statusCode());
+        void attempt() {
+            attempts++;
+            attemptStarted = System.nanoTime();
+            status = 0;
+            bytes = 0;
+            uncompressedBytes = 0;
+            outcome = null;
+            unchanged = false;
+        }
+
+        void attempted(Throwable failure) {
+            if (outcome == null) {
+                outcome = outcome(failure);
+            }
+            listener.onAttempt(new AttemptEvent(endpoint, attempts, outcome, status, bytes, uncompressedBytes,
+                    Duration.ofNanos(System.nanoTime() - attemptStarted), failure));
+        }
+
+        <E extends Throwable> E completed(E failure) {
+            var outcome = this.outcome == Outcome.DECODE_ERROR ? Outcome.DECODE_ERROR : outcome(failure);
+            listener.onRequest(new RequestEvent(endpoint, outcome, status, attempts, bytes, uncompressedBytes,
+                    Duration.ofNanos(System.nanoTime() - started), Duration.ofNanos(decoding), unchanged, failure));
+            return failure;
+        }
+
+        private Outcome outcome(Throwable failure) {
+            if (failure == null) {
+                return Outcome.SUCCESS;
+
+            } else if (failure instanceof DeadlineExceededException) {
+                return Outcome.DEADLINE_EXCEEDED;
+
+            } else if (status != 0 && (status < 100 || status >= 400)) {
+                return Outcome.HTTP_ERROR;
+
+            } else {
+                return Outcome.TRANSPORT_ERROR;
+            }
         }
     }
 
-    private HttpRequest.Builder request(String url) {
-        return HttpRequest.newBuilder(URI.create(url)).setHeader("User-Agent", userAgent).timeout(timeout);
+    private static void assertSuccess(HttpRequest request, Response response) throws IOException {
+        var status = response.status();
+        if (status >= 100 && status < 400) {
+            return;
+        }
+        var retryAfter = status == 429 || status == 503 ? retryAfter(response) : null;
+        throw new HttpStatusException("Query " + request + " failed with response code " + status, status, retryAfter);
+    }
+
+    /**
+     * Parses Retry-After as delay seconds or as HTTP date. A malformed header
+     * is treated as missing.
+     */
+    private static Duration retryAfter(Response response) {
+        var header = response.headers().firstValue("Retry-After");
+        if (header.isEmpty()) {
+            return null;
+        }
+        var value = header.get().trim();
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(value)));
+
+        } catch (NumberFormatException e) {
+            try {
+                var date = ZonedDateTime.parse(value, RFC_1123_DATE_TIME).toInstant();
+                var delay = Duration.between(Instant.now(), date);
+                return delay.isNegative() ? Duration.ZERO : delay;
+
+            } catch (DateTimeParseException e2) {
+                return null;
+            }
+        }
     }
 }
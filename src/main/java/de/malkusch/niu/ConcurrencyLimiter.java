@@ -0,0 +1,253 @@
+package de.malkusch.niu;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Limits the attempts in flight with an AIMD limit. A failed or slow attempt
+ * lowers the limit by 10%, while a fast attempt at a well used limit raises
+ * it by one per limit's worth of attempts. An attempt is slow, if it takes
+ * more than twice the smoothed latency of the fast ones. So the limit follows
+ * the backend's capacity, and excess attempts queue here instead of piling up
+ * in the backend.
+ * <p>
+ * Attempts beyond the limit wait in a bounded queue for a bounded time, and
+ * are shed with {@link OverloadedException} otherwise.
+ */
+final class ConcurrencyLimiter {
+
+    /**
+     * @param maxLimit
+     *            The limit never grows beyond this.
+     * @param maxQueue
+     *            Attempts which may wait for a free slot.
+     * @param maxWait
+     *            The longest wait for a free slot.
+     */
+    record Configuration(int maxLimit, int maxQueue, Duration maxWait) {
+
+        static final Configuration DISABLED = new Configuration(Integer.MAX_VALUE, 0, Duration.ZERO);
+
+        Configuration {
+            requireNonNull(maxWait);
+            if (maxLimit < 1) {
+                throw new IllegalArgumentException("maxLimit must be positive");
+            }
+            if (maxQueue < 0) {
+                throw new IllegalArgumentException("maxQueue must not be negative");
+            }
+            if (maxWait.isNegative()) {
+                throw new IllegalArgumentException("maxWait must not be negative");
+            }
+        }
+
+        boolean isDisabled() {
+            return this == DISABLED;
+        }
+    }
+
+    static final ConcurrencyLimiter DISABLED = new ConcurrencyLimiter(Configuration.DISABLED);
+
+    private static final int INITIAL_LIMIT = 16;
+    private static final double DECREASE = 0.9;
+    private static final double TOLERANCE = 2;
+
+    /**
+     * The weight of one sample in the smoothed latency.
+     */
+    private static final double SMOOTHING = 0.01;
+
+    private final Configuration configuration;
+    private final ScheduledExecutorService scheduler;
+    private final boolean disabled;
+    private final Queue<CompletableFuture<Void>> waiting = new ArrayDeque<>();
+    private double limit;
+    private int inFlight;
+    private double latency;
+    private long lastDecrease;
+    private long shed;
+
+    ConcurrencyLimiter(Configuration configuration) {
+        this(configuration, Futures.SCHEDULER);
+    }
+
+    /**
+     * @param scheduler
+     *            Times out waiting attempts after {@code maxWait} or at their
+     *            deadline.
+     */
+    ConcurrencyLimiter(Configuration configuration, ScheduledExecutorService scheduler) {
+        this.configuration = requireNonNull(configuration);
+        this.scheduler = requireNonNull(scheduler);
+        disabled = configuration.isDisabled();
+        limit = Math.min(INITIAL_LIMIT, configuration.maxLimit());
+    }
+
+    /**
+     * Blocks until a slot is free. The slot must be given back with
+     * {@link #release(long, boolean)}.
+     */
+    void acquire() throws IOException, InterruptedException {
+        acquire(Deadline.NONE);
+    }
+
+    /**
+     * Like {@link #acquire()}, but waits at most until the deadline.
+     *
+     * @throws DeadlineExceededException
+     *             if the deadline ran out before a slot was free
+     */
+    void acquire(Deadline deadline) throws IOException, InterruptedException {
+        var acquired = acquireAsync(deadline);
+        try {
+            acquired.get();
+
+        } catch (InterruptedException e) {
+            // A slot that is granted after all is given back
+            acquired.thenRun(this::release);
+            throw e;
+
+        } catch (ExecutionException e) {
+            throw (IOException) Futures.unwrap(e);
+        }
+    }
+
+    CompletableFuture<Void> acquireAsync() {
+        return acquireAsync(Deadline.NONE);
+    }
+
+    /**
+     * An attempt whose deadline runs out before {@code maxWait} fails with
+     * {@link DeadlineExceededException}, and isn't counted as shed.
+     */
+    CompletableFuture<Void> acquireAsync(Deadline deadline) {
+        if (disabled) {
+            return completedFuture(null);
+        }
+        Duration wait;
+        try {
+            wait = deadline.timeout(configuration.maxWait());
+
+        } catch (DeadlineExceededException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        var expires = wait.compareTo(configuration.maxWait()) < 0;
+        var acquired = new CompletableFuture<Void>();
+        synchronized (this) {
+            if (inFlight < (int) limit && waiting.isEmpty()) {
+                inFlight++;
+                return completedFuture(null);
+            }
+            if (waiting.size() >= configuration.maxQueue()) {
+                shed++;
+                return CompletableFuture.failedFuture(overloaded());
+            }
+            waiting.add(acquired);
+        }
+        var timeout = scheduler.schedule(() -> {
+            synchronized (this) {
+                if (!waiting.remove(acquired)) {
+                    return;
+                }
+                if (!expires) {
+                    shed++;
+                }
+            }
+            acquired.completeExceptionally(expires ? deadline.exceeded(null) : overloaded());
+        }, wait.toNanos(), NANOSECONDS);
+        acquired.whenComplete((ignore, error) -> timeout.cancel(false));
+        return acquired;
+    }
+
+    private OverloadedException overloaded() {
+        return new OverloadedException(String.format("Concurrency limit of %d with %d queued calls reached",
+                (int) limit(), configuration.maxQueue()));
+    }
+
+    /**
+     * Gives the slot back and adapts the limit.
+     *
+     * @param latency
+     *            The attempt's duration in nanoseconds.
+     * @param failed
+     *            Whether the attempt failed in a way that indicates overload,
+     *            like a timeout or a 5xx or 429.
+     */
+    void release(long latency, boolean failed) {
+        if (disabled) {
+            return;
+        }
+        synchronized (this) {
+            var now = System.nanoTime();
+            if (failed || this.latency > 0 && latency > this.latency * TOLERANCE) {
+                decrease(now);
+
+            } else {
+                this.latency = this.latency == 0 ? latency : this.latency + (latency - this.latency) * SMOOTHING;
+                if (inFlight * 2 >= limit) {
+                    limit = Math.min(configuration.maxLimit(), limit + 1 / limit);
+                }
+            }
+        }
+        release();
+    }
+
+    /**
+     * Lowers the limit at most once per smoothed latency, so that the attempts
+     * which were sent at the old limit don't lower it again.
+     */
+    private void decrease(long now) {
+        if (now - lastDecrease < latency) {
+            return;
+        }
+        lastDecrease = now;
+        limit = Math.max(1, limit * DECREASE);
+    }
+
+    /**
+     * Gives the slot back without adapting the limit, e.g. for an attempt
+     * which was cancelled or never sent.
+     */
+    void release() {
+        CompletableFuture<Void> next;
+        synchronized (this) {
+            inFlight--;
+            if (inFlight >= (int) limit) {
+                return;
+            }
+            next = waiting.poll();
+            if (next == null) {
+                return;
+            }
+            inFlight++;
+        }
+        if (!next.complete(null)) {
+            release();
+        }
+    }
+
+    synchronized double limit() {
+        return limit;
+    }
+
+    synchronized int inFlight() {
+        return inFlight;
+    }
+
+    synchronized int queued() {
+        return waiting.size();
+    }
+
+    synchronized long shed() {
+        return shed;
+    }
+}
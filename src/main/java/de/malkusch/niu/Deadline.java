@@ -0,0 +1,103 @@
+package de.malkusch.niu;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The time budget of one call. It starts with the call and covers the token
+ * refresh, every attempt and every delay between attempts.
+ */
+final class Deadline {
+
+    static final Deadline NONE = new Deadline(null, 0);
+
+    private final Duration budget;
+    private final long expiresAt;
+
+    private Deadline(Duration budget, long expiresAt) {
+        this.budget = budget;
+        this.expiresAt = expiresAt;
+    }
+
+    static Deadline after(Duration budget) {
+        if (budget.isNegative() || budget.isZero()) {
+            throw new IllegalArgumentException("deadline must be positive");
+        }
+        return new Deadline(budget, System.nanoTime() + budget.toNanos());
+    }
+
+    boolean isNone() {
+        return this == NONE;
+    }
+
+    private long remainingNanos() {
+        return isNone() ? Long.MAX_VALUE : expiresAt - System.nanoTime();
+    }
+
+    /**
+     * Whether an attempt after waiting {@code delay} still has some time left.
+     */
+    boolean covers(Duration delay) {
+        return remainingNanos() > delay.toNanos();
+    }
+
+    /**
+     * @throws DeadlineExceededException
+     *             if no time is left
+     */
+    Duration remaining() throws DeadlineExceededException {
+        var remaining = remainingNanos();
+        if (remaining <= 0) {
+            throw exceeded(null);
+        }
+        return Duration.ofNanos(remaining);
+    }
+
+    /**
+     * @return the shorter of {@code timeout} and the remaining time
+     * @throws DeadlineExceededException
+     *             if no time is left for an attempt
+     */
+    Duration timeout(Duration timeout) throws DeadlineExceededException {
+        var remaining = remaining();
+        return remaining.compareTo(timeout) < 0 ? remaining : timeout;
+    }
+
+    DeadlineExceededException exceeded(Throwable cause) {
+        return new DeadlineExceededException(requireNonNull(budget), cause);
+    }
+
+    /**
+     * Fails with {@link DeadlineExceededException} when the deadline is over
+     * before {@code future} completes. The {@code future} itself isn't
+     * cancelled, as it may be shared with other calls.
+     */
+    <T> CompletableFuture<T> bound(CompletableFuture<T> future) {
+        if (isNone() || future.isDone()) {
+            return future;
+        }
+        var bounded = new CompletableFuture<T>();
+        var timer = Futures.SCHEDULER.schedule(() -> bounded.completeExceptionally(exceeded(null)),
+                Math.max(0, remainingNanos()), NANOSECONDS);
+        future.whenComplete((value, error) -> {
+            timer.cancel(false);
+            if (error != null) {
+                bounded.completeExceptionally(Futures.unwrap(error));
+            } else {
+                bounded.complete(value);
+            }
+        });
+        return bounded;
+    }
+
+    /**
+     * Waits for {@code future} at most until the deadline.
+     */
+    <T> T get(CompletableFuture<T> future) throws IOException {
+        return Futures.get(bound(future));
+    }
+}
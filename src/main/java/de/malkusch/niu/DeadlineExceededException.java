@@ -0,0 +1,26 @@
+package de.malkusch.niu;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * A call ran out of its deadline, or the remaining time couldn't cover
+ * another attempt. The cause is the last failed attempt, if there was one.
+ *
+ * @see Niu#withDeadline(Duration)
+ */
+public final class DeadlineExceededException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Duration deadline;
+
+    DeadlineExceededException(Duration deadline, Throwable cause) {
+        super("Deadline of " + deadline + " exceeded", cause);
+        this.deadline = deadline;
+    }
+
+    public Duration deadline() {
+        return deadline;
+    }
+}
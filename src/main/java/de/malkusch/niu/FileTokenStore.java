@@ -0,0 +1,84 @@
+package de.malkusch.niu;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Stores one JSON file per account in a directory. Files are replaced
+ * atomically, so that several processes can share the directory.
+ */
+public final class FileTokenStore implements TokenStore {
+
+    private final Path directory;
+    private final ObjectMapper mapper = JsonMapper.builder().build();
+
+    public FileTokenStore(Path directory) {
+        this.directory = requireNonNull(directory);
+    }
+
+    @Override
+    public Optional<StoredToken> load(String account) throws IOException {
+        try {
+            return Optional.of(mapper.readValue(Files.readAllBytes(file(account)), StoredToken.class));
+
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+
+        } catch (JacksonException e) {
+            throw new IOException("Failed reading token of " + account, e);
+        }
+    }
+
+    @Override
+    public void store(String account, StoredToken token) throws IOException {
+        Files.createDirectories(directory);
+        var file = file(account);
+        var temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            restrictPermissions(temporary);
+            Files.write(temporary, mapper.writeValueAsBytes(token));
+            Files.move(temporary, file, ATOMIC_MOVE, REPLACE_EXISTING);
+
+        } catch (JacksonException e) {
+            throw new IOException("Failed writing token of " + account, e);
+
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private Path file(String account) {
+        try {
+            var sha256 = MessageDigest.getInstance("SHA-256");
+            return directory.resolve(HexFormat.of().formatHex(sha256.digest(account.getBytes(UTF_8))) + ".json");
+
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void restrictPermissions(Path file) throws IOException {
+        try {
+            Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rw-------"));
+
+        } catch (UnsupportedOperationException e) {
+            // Not a POSIX file system
+        }
+    }
+}
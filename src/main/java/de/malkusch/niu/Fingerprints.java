@@ -0,0 +1,97 @@
+package de.malkusch.niu;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32C;
+
+/**
+ * Remembers a fingerprint of the last response body per request together with
+ * its decoded value, so that an unchanged body doesn't need to be decoded
+ * again. Endpoints which are not configured bypass the fingerprints.
+ */
+final class Fingerprints {
+
+    record Configuration(Set<String> endpoints, int maxSize) {
+
+        static final Configuration DISABLED = new Configuration(Set.of(), 0);
+
+        Configuration {
+            endpoints = Set.copyOf(endpoints);
+            if (maxSize < 0) {
+                throw new IllegalArgumentException("maxSize must not be negative");
+            }
+        }
+
+        boolean isDisabled() {
+            return endpoints.isEmpty() || maxSize == 0;
+        }
+    }
+
+    static final Fingerprints DISABLED = new Fingerprints(Configuration.DISABLED);
+
+    /**
+     * The CRC32C of the body in the upper and its hash code in the lower 32
+     * bits, plus the length.
+     */
+    record Fingerprint(long hash, int length) {
+
+        static Fingerprint of(byte[] body) {
+            var crc = new CRC32C();
+            crc.update(body);
+            return new Fingerprint(crc.getValue() << 32 | Arrays.hashCode(body) & 0xffffffffL, body.length);
+        }
+    }
+
+    private record Key(Class<?> type, String url, Form body) {
+    }
+
+    private record Entry(Fingerprint fingerprint, Object value) {
+    }
+
+    private final Set<String> endpoints;
+    private final Map<Key, Entry> entries;
+    private final boolean disabled;
+
+    Fingerprints(Configuration configuration) {
+        endpoints = configuration.endpoints();
+        disabled = configuration.isDisabled();
+        var maxSize = configuration.maxSize();
+        entries = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    boolean isEnabled(String url) {
+        if (disabled) {
+            return false;
+        }
+        var query = url.indexOf('?');
+        return endpoints.contains(query < 0 ? url : url.substring(0, query));
+    }
+
+    /**
+     * Returns the previously decoded value, or {@code null} if the body
+     * changed.
+     */
+    <T> T unchanged(Class<T> type, String url, Form body, Fingerprint fingerprint) {
+        var entry = entries.get(new Key(type, url, body));
+        if (entry == null || !entry.fingerprint.equals(fingerprint)) {
+            return null;
+        }
+        return type.cast(entry.value);
+    }
+
+    void store(Class<?> type, String url, Form body, Fingerprint fingerprint, Object value) {
+        entries.put(new Key(type, url, body), new Entry(fingerprint, value));
+    }
+
+    int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,160 @@
+package de.malkusch.niu;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.util.Arrays;
+
+/**
+ * An application/x-www-form-urlencoded body or query. It's encoded like
+ * {@link java.net.URLEncoder} with UTF-8, but the fields are measured first
+ * and then written into one exactly sized buffer.
+ * <p>
+ * Constant fields are encoded once with {@link #of(Field...)} and extended by
+ * each call's variable fields with {@link #with(Field...)}.
+ */
+final class Form {
+
+    static final Form EMPTY = new Form(new byte[0]);
+
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes(US_ASCII);
+
+    private final byte[] bytes;
+
+    private Form(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    static Form of(Field... fields) {
+        return EMPTY.with(fields);
+    }
+
+    Form with(Field... fields) {
+        if (fields.length == 0) {
+            return this;
+        }
+        var length = bytes.length + (bytes.length == 0 ? fields.length - 1 : fields.length);
+        for (var field : fields) {
+            length += encodedLength(field.name()) + 1 + encodedLength(field.value());
+        }
+
+        var buffer = Arrays.copyOf(bytes, length);
+        var position = bytes.length;
+        for (var field : fields) {
+            if (position > 0) {
+                buffer[position++] = '&';
+            }
+            position = encode(field.name(), buffer, position);
+            buffer[position++] = '=';
+            position = encode(field.value(), buffer, position);
+        }
+        return new Form(buffer);
+    }
+
+    boolean isEmpty() {
+        return bytes.length == 0;
+    }
+
+    /**
+     * The encoded form, which must not be modified.
+     */
+    byte[] bytes() {
+        return bytes;
+    }
+
+    private static int encodedLength(String value) {
+        var length = 0;
+        for (var i = 0; i < value.length(); i++) {
+            var c = value.charAt(i);
+            if (c < 0x80) {
+                length += isUnreserved(c) || c == ' ' ? 1 : 3;
+
+            } else if (c < 0x800) {
+                length += 6;
+
+            } else if (isSurrogatePair(value, i)) {
+                length += 12;
+                i++;
+
+            } else if (Character.isSurrogate(c)) {
+                length += 3;
+
+            } else {
+                length += 9;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Like {@link java.net.URLEncoder}, a malformed surrogate is encoded as
+     * {@code ?}.
+     */
+    private static int encode(String value, byte[] buffer, int position) {
+        for (var i = 0; i < value.length(); i++) {
+            var c = value.charAt(i);
+            if (c < 0x80) {
+                if (isUnreserved(c)) {
+                    buffer[position++] = (byte) c;
+
+                } else if (c == ' ') {
+                    buffer[position++] = '+';
+
+                } else {
+                    position = percent(c, buffer, position);
+                }
+
+            } else if (c < 0x800) {
+                position = percent(0xc0 | c >> 6, buffer, position);
+                position = percent(0x80 | c & 0x3f, buffer, position);
+
+            } else if (isSurrogatePair(value, i)) {
+                var codePoint = Character.toCodePoint(c, value.charAt(++i));
+                position = percent(0xf0 | codePoint >> 18, buffer, position);
+                position = percent(0x80 | codePoint >> 12 & 0x3f, buffer, position);
+                position = percent(0x80 | codePoint >> 6 & 0x3f, buffer, position);
+                position = percent(0x80 | codePoint & 0x3f, buffer, position);
+
+            } else if (Character.isSurrogate(c)) {
+                position = percent('?', buffer, position);
+
+            } else {
+                position = percent(0xe0 | c >> 12, buffer, position);
+                position = percent(0x80 | c >> 6 & 0x3f, buffer, position);
+                position = percent(0x80 | c & 0x3f, buffer, position);
+            }
+        }
+        return position;
+    }
+
+    private static int percent(int b, byte[] buffer, int position) {
+        buffer[position++] = '%';
+        buffer[position++] = HEX[b >> 4 & 0xf];
+        buffer[position++] = HEX[b & 0xf];
+        return position;
+    }
+
+    private static boolean isUnreserved(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '-' || c == '_'
+                || c == '.' || c == '*';
+    }
+
+    private static boolean isSurrogatePair(String value, int i) {
+        return Character.isHighSurrogate(value.charAt(i)) && i + 1 < value.length()
+                && Character.isLowSurrogate(value.charAt(i + 1));
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Form form && Arrays.equals(bytes, form.bytes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(bytes);
+    }
+
+    @Override
+    public String toString() {
+        return new String(bytes, US_ASCII);
+    }
+}
@@ -0,0 +1,132 @@
+package de.malkusch.niu;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+final class Futures {
+
+    private Futures() {
+    }
+
+    static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        var thread = new Thread(runnable, "niu-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @FunctionalInterface
+    interface CheckedFunction<T, R> {
+        R apply(T value) throws IOException;
+    }
+
+    /**
+     * Like {@link CompletableFuture#thenApply(java.util.function.Function)}, but
+     * the mapping may throw an {@link IOException}, and failures are propagated
+     * without a wrapping {@link CompletionException}.
+     */
+    static <T, R> CompletableFuture<R> map(CompletionStage<T> stage, CheckedFunction<? super T, ? extends R> mapping) {
+        var result = new CompletableFuture<R>();
+        stage.whenComplete((value, error) -> {
+            if (error != null) {
+                result.completeExceptionally(unwrap(error));
+                return;
+            }
+            try {
+                result.complete(mapping.apply(value));
+
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Like {@link CompletableFuture#thenCompose(java.util.function.Function)},
+     * but failures are propagated without a wrapping
+     * {@link CompletionException}.
+     */
+    static <T, R> CompletableFuture<R> compose(CompletionStage<T> stage,
+            Function<? super T, ? extends CompletionStage<R>> composition) {
+
+        var result = new CompletableFuture<R>();
+        stage.whenComplete((value, error) -> {
+            if (error != null) {
+                result.completeExceptionally(unwrap(error));
+                return;
+            }
+            try {
+                composition.apply(value).whenComplete((composed, failure) -> {
+                    if (failure != null) {
+                        result.completeExceptionally(unwrap(failure));
+                    } else {
+                        result.complete(composed);
+                    }
+                });
+
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Like {@link CompletableFuture#whenComplete(java.util.function.BiConsumer)},
+     * but without wrapping the failure into a {@link CompletionException}.
+     */
+    static <T> CompletableFuture<T> peek(CompletionStage<T> stage, BiConsumer<? super T, ? super Throwable> action) {
+        var result = new CompletableFuture<T>();
+        stage.whenComplete((value, error) -> {
+            var cause = error == null ? null : unwrap(error);
+            action.accept(value, cause);
+            if (cause != null) {
+                result.completeExceptionally(cause);
+            } else {
+                result.complete(value);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Waits for the future and rethrows its failure as it was thrown
+     * synchronously.
+     */
+    static <T> T get(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+
+        } catch (ExecutionException e) {
+            var cause = unwrap(e);
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            } else if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            } else if (cause instanceof Error error) {
+                throw error;
+            } else {
+                throw new IOException(cause);
+            }
+        }
+    }
+
+    static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException)
+                && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+}
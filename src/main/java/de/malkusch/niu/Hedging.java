@@ -0,0 +1,115 @@
+package de.malkusch.niu;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides when a slow request gets a second, hedged request. The hedge delay
+ * is a percentile of the endpoint's recent latencies, so that only the slowest
+ * requests are hedged. A {@link RetryBudget} caps the extra load.
+ */
+final class Hedging {
+
+    /**
+     * @param endpoints
+     *            URLs without query of idempotent endpoints
+     * @param percentile
+     *            Requests slower than this percentile are hedged, e.g. 0.95
+     * @param maxExtraLoad
+     *            Hedges per request, e.g. 0.05 for 5% extra requests
+     */
+    record Configuration(Set<String> endpoints, double percentile, double maxExtraLoad) {
+
+        static final Configuration DISABLED = new Configuration(Set.of(), 0.95, 0);
+
+        Configuration {
+            endpoints = Set.copyOf(endpoints);
+            if (percentile <= 0 || percentile >= 1) {
+                throw new IllegalArgumentException("percentile must be between 0 and 1");
+            }
+            if (maxExtraLoad < 0) {
+                throw new IllegalArgumentException("maxExtraLoad must not be negative");
+            }
+        }
+
+        boolean isDisabled() {
+            return endpoints.isEmpty() || maxExtraLoad == 0;
+        }
+    }
+
+    static final Hedging DISABLED = new Hedging(Configuration.DISABLED);
+
+    /**
+     * No hedging until the endpoint has this many samples.
+     */
+    private static final int MIN_SAMPLES = 64;
+
+    /**
+     * The histogram is restarted after this many samples, so that the delay
+     * follows the endpoint's current latency.
+     */
+    private static final int WINDOW = 4096;
+
+    private static final Duration MIN_DELAY = Duration.ofMillis(10);
+
+    private final class Latencies {
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private final AtomicLong samples = new AtomicLong();
+        private volatile Duration delay;
+
+        void record(long nanos) {
+            histogram.recordNanos(nanos);
+            var samples = this.samples.incrementAndGet();
+            if (samples % MIN_SAMPLES == 0) {
+                var percentile = histogram.percentile(configuration.percentile());
+                delay = percentile.compareTo(MIN_DELAY) < 0 ? MIN_DELAY : percentile;
+                if (samples % WINDOW == 0) {
+                    histogram.reset();
+                }
+            }
+        }
+    }
+
+    private final Configuration configuration;
+    private final boolean disabled;
+    private final RetryBudget budget;
+    private final Map<String, Latencies> latencies = new ConcurrentHashMap<>();
+
+    Hedging(Configuration configuration) {
+        this.configuration = requireNonNull(configuration);
+        disabled = configuration.isDisabled();
+        budget = new RetryBudget(configuration.maxExtraLoad(), 0, 10);
+    }
+
+    boolean isEnabled(String url) {
+        return !disabled && configuration.endpoints().contains(endpoint(url));
+    }
+
+    private static String endpoint(String url) {
+        var query = url.indexOf('?');
+        return query < 0 ? url : url.substring(0, query);
+    }
+
+    /**
+     * @return the delay after which a request should be hedged, or
+     *         {@code null} if there are not enough samples yet
+     */
+    Duration delay(String url) {
+        budget.deposit();
+        var latencies = this.latencies.get(endpoint(url));
+        return latencies == null ? null : latencies.delay;
+    }
+
+    boolean tryHedge() {
+        return budget.tryWithdraw();
+    }
+
+    void record(String url, long nanos) {
+        latencies.computeIfAbsent(endpoint(url), it -> new Latencies()).record(nanos);
+    }
+}
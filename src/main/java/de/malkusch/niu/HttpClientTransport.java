@@ -0,0 +1,52 @@
+package de.malkusch.niu;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sends with the JDK's {@link HttpClient}. A synchronous response body is
+ * streamed from the connection, an asynchronous one is received completely.
+ */
+final class HttpClientTransport implements HttpTransport {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final HttpClient httpClient;
+
+    HttpClientTransport(HttpClient httpClient) {
+        this.httpClient = requireNonNull(httpClient);
+    }
+
+    @Override
+    public Response send(HttpRequest request) throws IOException, InterruptedException {
+        var response = httpClient.send(request, BodyHandlers.ofInputStream());
+        return new Response(response.statusCode(), response.headers(), response.body());
+    }
+
+    @Override
+    public CompletableFuture<Response> sendAsync(HttpRequest request) {
+        var response = httpClient.sendAsync(request, BodyHandlers.ofByteArray());
+        var result = response.thenApply(it -> new Response(it.statusCode(), it.headers(),
+                new ByteArrayInputStream(it.body() == null ? EMPTY : it.body())));
+
+        // Cancelling the dependent future doesn't cancel the request by itself
+        result.whenComplete((it, error) -> {
+            if (result.isCancelled()) {
+                response.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public Duration timeout() {
+        return httpClient.connectTimeout().orElseThrow();
+    }
+}
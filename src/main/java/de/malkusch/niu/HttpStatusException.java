@@ -0,0 +1,45 @@
+package de.malkusch.niu;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * The NIU API answered with an error status.
+ */
+public final class HttpStatusException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+    private final Duration retryAfter;
+
+    HttpStatusException(String message, int status, Duration retryAfter) {
+        super(message);
+        this.status = status;
+        this.retryAfter = retryAfter;
+    }
+
+    public int status() {
+        return status;
+    }
+
+    /**
+     * The server's Retry-After header of a 429 or 503 response.
+     */
+    public Optional<Duration> retryAfter() {
+        return Optional.ofNullable(retryAfter);
+    }
+
+    boolean isUnauthorized() {
+        return status == 401;
+    }
+
+    /**
+     * Client errors won't go away by retrying, except for timeouts and rate
+     * limits.
+     */
+    boolean isRetryable() {
+        return status < 400 || status >= 500 || status == 408 || status == 429;
+    }
+}
@@ -0,0 +1,42 @@
+package de.malkusch.niu;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Moves a request's bytes to the server and the response's bytes back. The
+ * client builds the requests and decodes, retries and measures the responses,
+ * so that a transport is only the HTTP engine. The JDK's {@link
+ * java.net.http.HttpClient} is the default, {@link InMemoryTransport} answers
+ * from memory.
+ *
+ * @see NiuTransport.Builder#httpTransport(HttpTransport)
+ */
+public interface HttpTransport {
+
+    /**
+     * @param headers
+     *            Content-Encoding and Retry-After are read from them
+     * @param body
+     *            is read once and closed
+     */
+    record Response(int status, HttpHeaders headers, InputStream body) {
+    }
+
+    Response send(HttpRequest request) throws IOException, InterruptedException;
+
+    /**
+     * Completes after the whole body was received, so that reading it doesn't
+     * block. Cancelling the future cancels the request.
+     */
+    CompletableFuture<Response> sendAsync(HttpRequest request);
+
+    /**
+     * The timeout of each request, which is shortened to a call's deadline.
+     */
+    Duration timeout();
+}
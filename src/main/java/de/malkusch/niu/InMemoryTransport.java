@@ -0,0 +1,88 @@
+package de.malkusch.niu;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.failedFuture;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Answers requests from memory per URI path, e.g. to measure decoding and
+ * authentication in performance tests and benchmarks without any network.
+ * Bodies aren't copied, each response reads straight from the registered
+ * array.
+ *
+ * <pre>
+ * var transport = new InMemoryTransport().respond("/v3/motor_data/index_info", indexInfo);
+ * var niu = new Niu.Builder(account, password, countryCode)
+ *         .transport(new NiuTransport.Builder().httpTransport(transport).build()).build();
+ * </pre>
+ */
+public final class InMemoryTransport implements HttpTransport {
+
+    @FunctionalInterface
+    public interface Handler {
+        Response handle(HttpRequest request) throws IOException;
+    }
+
+    private static final HttpHeaders JSON = HttpHeaders.of(Map.of("Content-Type", List.of("application/json")),
+            (name, value) -> true);
+    private static final HttpHeaders NONE = HttpHeaders.of(Map.of(), (name, value) -> true);
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private final Map<String, Handler> handlers = new ConcurrentHashMap<>();
+
+    /**
+     * Answers requests for {@code path} with 200 and {@code body}, which must
+     * not be modified afterwards.
+     */
+    public InMemoryTransport respond(String path, byte[] body) {
+        requireNonNull(body);
+        return route(path, request -> ok(body));
+    }
+
+    public InMemoryTransport route(String path, Handler handler) {
+        handlers.put(requireNonNull(path), requireNonNull(handler));
+        return this;
+    }
+
+    public static Response ok(byte[] body) {
+        return new Response(200, JSON, new ByteArrayInputStream(body));
+    }
+
+    /**
+     * Unknown paths are answered with 404.
+     */
+    @Override
+    public Response send(HttpRequest request) throws IOException {
+        var handler = handlers.get(request.uri().getPath());
+        if (handler == null) {
+            return new Response(404, NONE, InputStream.nullInputStream());
+        }
+        return handler.handle(request);
+    }
+
+    @Override
+    public CompletableFuture<Response> sendAsync(HttpRequest request) {
+        try {
+            return completedFuture(send(request));
+
+        } catch (IOException | RuntimeException e) {
+            return failedFuture(e);
+        }
+    }
+
+    @Override
+    public Duration timeout() {
+        return TIMEOUT;
+    }
+}
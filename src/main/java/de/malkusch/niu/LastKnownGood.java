@@ -0,0 +1,107 @@
+package de.malkusch.niu;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import de.malkusch.niu.Niu.Aged;
+
+/**
+ * Serves the last good value per key right away and refreshes it in the
+ * background, with at most one refresh per key in flight. A failed refresh
+ * keeps the old value until it's older than the max staleness. Then calls wait
+ * for the next load again, and fail with its failure.
+ */
+final class LastKnownGood<T> {
+
+    private static final class Entry<T> {
+        private T value;
+        private long loadedAt;
+        private CompletableFuture<T> loading;
+    }
+
+    private final Duration maxStaleness;
+    private final long maxStalenessNanos;
+    private final Map<String, Entry<T>> entries = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxStaleness
+     *            {@code null} disables serving stale values
+     */
+    LastKnownGood(Duration maxStaleness) {
+        if (maxStaleness != null && maxStaleness.isNegative()) {
+            throw new IllegalArgumentException("maxStaleness must not be negative");
+        }
+        this.maxStaleness = maxStaleness;
+        maxStalenessNanos = maxStaleness == null ? 0 : maxStaleness.toNanos();
+    }
+
+    boolean isEnabled() {
+        return maxStaleness != null;
+    }
+
+    CompletableFuture<Aged<T>> getAsync(String key, Supplier<CompletableFuture<T>> loader) {
+        return getAsync(key, Deadline.NONE, loader);
+    }
+
+    /**
+     * @param deadline
+     *            Bounds the wait for a load, which may have been started by
+     *            another call.
+     */
+    CompletableFuture<Aged<T>> getAsync(String key, Deadline deadline, Supplier<CompletableFuture<T>> loader) {
+        if (!isEnabled()) {
+            return load(loader).thenApply(Aged::fresh);
+        }
+        var entry = entries.computeIfAbsent(key, it -> new Entry<>());
+        Aged<T> stale = null;
+        CompletableFuture<T> loading;
+        var refresh = false;
+        synchronized (entry) {
+            var age = System.nanoTime() - entry.loadedAt;
+            if (entry.value != null && age <= maxStalenessNanos) {
+                stale = new Aged<>(entry.value, Duration.ofNanos(age));
+            }
+            loading = entry.loading;
+            if (loading == null) {
+                loading = entry.loading = new CompletableFuture<>();
+                refresh = true;
+            }
+        }
+        if (refresh) {
+            refresh(entry, loader, loading);
+        }
+        return stale != null ? completedFuture(stale) : deadline.bound(loading).thenApply(Aged::fresh);
+    }
+
+    private void refresh(Entry<T> entry, Supplier<CompletableFuture<T>> loader, CompletableFuture<T> loading) {
+        load(loader).whenComplete((value, error) -> {
+            synchronized (entry) {
+                entry.loading = null;
+                if (error == null) {
+                    entry.value = value;
+                    entry.loadedAt = System.nanoTime();
+                }
+            }
+            if (error == null) {
+                loading.complete(value);
+
+            } else {
+                loading.completeExceptionally(Futures.unwrap(error));
+            }
+        });
+    }
+
+    private static <T> CompletableFuture<T> load(Supplier<CompletableFuture<T>> loader) {
+        try {
+            return loader.get();
+
+        } catch (RuntimeException | Error e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package de.malkusch.niu;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free log-linear histogram of durations with microsecond resolution.
+ * Each power of two is split into eight buckets, so a percentile is off by at
+ * most 12.5%. Recording doesn't allocate.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Long.MAX_VALUE nanoseconds are less than 2^54 microseconds
+    private static final int BUCKETS = (54 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    public void record(Duration duration) {
+        recordNanos(duration.toNanos());
+    }
+
+    void recordNanos(long nanos) {
+        counts.incrementAndGet(bucket(Math.max(0, nanos / 1000)));
+    }
+
+    public long count() {
+        var count = 0L;
+        for (var i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * @param quantile
+     *            between 0 and 1, e.g. 0.99 for the p99
+     * @return the upper bound of the bucket containing the quantile, or
+     *         {@link Duration#ZERO} if nothing was recorded
+     */
+    public Duration percentile(double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("quantile must be between 0 and 1");
+        }
+        var snapshot = new long[BUCKETS];
+        var count = 0L;
+        for (var i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return Duration.ZERO;
+        }
+        var rank = Math.max(1, (long) Math.ceil(quantile * count));
+        var seen = 0L;
+        for (var i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Duration.ofNanos(upperBound(i) * 1000);
+            }
+        }
+        return Duration.ofNanos(upperBound(BUCKETS - 1) * 1000);
+    }
+
+    public void reset() {
+        for (var i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        var shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        var subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        var shift = bucket / SUB_BUCKETS - 1;
+        var subBucket = bucket % SUB_BUCKETS;
+        var lowerBound = (long) (SUB_BUCKETS + subBucket) << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,56 @@
+package de.malkusch.niu;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Dispatches to several listeners and shields requests from failing ones.
+ */
+final class Listeners implements NiuListener {
+
+    private final List<NiuListener> listeners;
+
+    private Listeners(List<NiuListener> listeners) {
+        this.listeners = List.copyOf(listeners);
+    }
+
+    static NiuListener of(List<NiuListener> listeners) {
+        return listeners.isEmpty() ? NONE : new Listeners(listeners);
+    }
+
+    /**
+     * Shields requests from a single listener, unless it's already shielded.
+     */
+    static NiuListener shielding(NiuListener listener) {
+        if (listener == NONE || listener instanceof Listeners) {
+            return listener;
+        }
+        return new Listeners(List.of(listener));
+    }
+
+    @Override
+    public void onAttempt(AttemptEvent event) {
+        dispatch(it -> it.onAttempt(event));
+    }
+
+    @Override
+    public void onRequest(RequestEvent event) {
+        dispatch(it -> it.onRequest(event));
+    }
+
+    @Override
+    public void onTokenRefresh(TokenRefreshEvent event) {
+        dispatch(it -> it.onTokenRefresh(event));
+    }
+
+    private void dispatch(Consumer<NiuListener> event) {
+        for (var listener : listeners) {
+            try {
+                event.accept(listener);
+
+            } catch (RuntimeException e) {
+                // A broken listener must not break the request
+            }
+        }
+    }
+}
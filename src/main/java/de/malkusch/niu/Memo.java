@@ -0,0 +1,42 @@
+package de.malkusch.niu;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.malkusch.niu.Futures.CheckedFunction;
+
+/**
+ * Remembers the last conversion per key. A response which {@link Fingerprints}
+ * reused is the identical object, so its identical conversion is returned as
+ * well.
+ */
+final class Memo<R, T> {
+
+    private record Last<R, T>(R response, T converted) {
+    }
+
+    private final boolean enabled;
+    private final CheckedFunction<R, T> converter;
+    private final Map<String, Last<R, T>> last = new ConcurrentHashMap<>();
+
+    Memo(boolean enabled, CheckedFunction<R, T> converter) {
+        this.enabled = enabled;
+        this.converter = requireNonNull(converter);
+    }
+
+    T convert(String key, R response) throws IOException {
+        if (!enabled) {
+            return converter.apply(response);
+        }
+        var last = this.last.get(key);
+        if (last != null && last.response == response) {
+            return last.converted;
+        }
+        var converted = converter.apply(response);
+        this.last.put(key, new Last<>(response, converted));
+        return converted;
+    }
+}
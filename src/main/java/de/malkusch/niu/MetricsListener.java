@@ -0,0 +1,156 @@
+package de.malkusch.niu;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregates latency histograms and counters per endpoint, e.g. to alert on
+ * the p99 or on retry storms.
+ */
+public final class MetricsListener implements NiuListener {
+
+    public static final class EndpointMetrics {
+
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LatencyHistogram attemptLatency = new LatencyHistogram();
+        private final LatencyHistogram decodeLatency = new LatencyHistogram();
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder decodeFailures = new LongAdder();
+        private final LongAdder attempts = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder uncompressedBytes = new LongAdder();
+        private final LongAdder unchanged = new LongAdder();
+        private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+        private EndpointMetrics() {
+        }
+
+        public LatencyHistogram latency() {
+            return latency;
+        }
+
+        public LatencyHistogram attemptLatency() {
+            return attemptLatency;
+        }
+
+        public LatencyHistogram decodeLatency() {
+            return decodeLatency;
+        }
+
+        public long requests() {
+            return requests.sum();
+        }
+
+        public long failures() {
+            return failures.sum();
+        }
+
+        public long decodeFailures() {
+            return decodeFailures.sum();
+        }
+
+        public long attempts() {
+            return attempts.sum();
+        }
+
+        public long retries() {
+            return retries.sum();
+        }
+
+        /**
+         * Received bytes, which are compressed if the server compressed the
+         * response.
+         */
+        public long bytes() {
+            return bytes.sum();
+        }
+
+        public long uncompressedBytes() {
+            return uncompressedBytes.sum();
+        }
+
+        /**
+         * Number of requests whose unchanged body wasn't decoded again.
+         */
+        public long unchanged() {
+            return unchanged.sum();
+        }
+
+        /**
+         * Number of attempts per HTTP status, 0 counts attempts without a
+         * response.
+         */
+        public Map<Integer, Long> statuses() {
+            var statuses = new ConcurrentHashMap<Integer, Long>();
+            this.statuses.forEach((status, count) -> statuses.put(status, count.sum()));
+            return statuses;
+        }
+    }
+
+    private final Map<String, EndpointMetrics> endpoints = new ConcurrentHashMap<>();
+    private final LatencyHistogram tokenRefreshLatency = new LatencyHistogram();
+    private final LongAdder tokenRefreshes = new LongAdder();
+    private final LongAdder tokenRefreshFailures = new LongAdder();
+
+    @Override
+    public void onAttempt(AttemptEvent event) {
+        var metrics = endpoint(event.endpoint());
+        metrics.attemptLatency.record(event.duration());
+        metrics.attempts.increment();
+        if (event.attempt() > 1) {
+            metrics.retries.increment();
+        }
+        metrics.statuses.computeIfAbsent(event.status(), it -> new LongAdder()).increment();
+    }
+
+    @Override
+    public void onRequest(RequestEvent event) {
+        var metrics = endpoint(event.endpoint());
+        metrics.latency.record(event.duration());
+        metrics.decodeLatency.record(event.decoding());
+        metrics.requests.increment();
+        metrics.bytes.add(event.bytes());
+        metrics.uncompressedBytes.add(event.uncompressedBytes());
+        if (event.outcome() != Outcome.SUCCESS) {
+            metrics.failures.increment();
+        }
+        if (event.outcome() == Outcome.DECODE_ERROR) {
+            metrics.decodeFailures.increment();
+        }
+        if (event.unchanged()) {
+            metrics.unchanged.increment();
+        }
+    }
+
+    @Override
+    public void onTokenRefresh(TokenRefreshEvent event) {
+        tokenRefreshLatency.record(event.duration());
+        tokenRefreshes.increment();
+        if (event.failure() != null) {
+            tokenRefreshFailures.increment();
+        }
+    }
+
+    public EndpointMetrics endpoint(String endpoint) {
+        return endpoints.computeIfAbsent(endpoint, it -> new EndpointMetrics());
+    }
+
+    public Map<String, EndpointMetrics> endpoints() {
+        return Map.copyOf(endpoints);
+    }
+
+    public LatencyHistogram tokenRefreshLatency() {
+        return tokenRefreshLatency;
+    }
+
+    public long tokenRefreshes() {
+        return tokenRefreshes.sum();
+    }
+
+    public long tokenRefreshFailures() {
+        return tokenRefreshFailures.sum();
+    }
+}
@@ -1,21 +1,58 @@
 package de.malkusch.niu;
 
 import static java.util.Arrays.stream;
+import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toSet;
 
 import java.io.IOException;
+import java.net.http.HttpClient;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
 
+import de.malkusch.niu.Authentication.Token;
 import de.malkusch.niu.Retry.Configuration;
 
 public class Niu {
 
     private final Client client;
     private final Authentication authentication;
+    private final int fleetConcurrency;
+    private final Watcher.Intervals watchIntervals;
+    private final Memo<VehiclesResponse, Vehicle[]> vehicleLists;
+    private final Memo<OdometerResponse, Odometer> odometers;
+    private final LastKnownGood<VehicleInfo> vehicles;
+    private final LastKnownGood<BatteryInfo> batteryInfos;
+    private final Duration deadline;
+
+    public enum Endpoint {
+        VEHICLES(VEHICLES_URI), BATTERY_INFO(BATTERY_INFO_URI), VEHICLE(INFO_URI), ODOMETER(ODOMETER_URI);
+
+        private final String uri;
+
+        Endpoint(String uri) {
+            this.uri = uri;
+        }
+    }
 
     public static final class Builder {
         private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(10);
-        private static final Retry.Configuration DEFAULT_RETRY = new Configuration(3, Duration.ofSeconds(10));
+        private static final Retry.Configuration DEFAULT_RETRY = new Configuration(3, Duration.ofSeconds(2),
+                Duration.ofSeconds(30), 0.5);
+        private static final int DEFAULT_FLEET_CONCURRENCY = 8;
+        private static final int DEFAULT_CACHE_SIZE = 1024;
+        private static final int FINGERPRINTS_SIZE = 16 * 1024;
+        private static final double HEDGE_PERCENTILE = 0.95;
+        private static final double HEDGE_MAX_EXTRA_LOAD = 0.05;
 
         private Duration timeout = DEFAULT_TIMEOUT;
         private Duration expirationWindow = timeout.multipliedBy(3);
@@ -23,6 +60,22 @@ public class Niu {
         private final String password;
         private final String countryCode;
         private Retry.Configuration retry = DEFAULT_RETRY;
+        private int fleetConcurrency = DEFAULT_FLEET_CONCURRENCY;
+        private final Map<Endpoint, Duration> cacheTtls = new EnumMap<>(Endpoint.class);
+        private int cacheSize = DEFAULT_CACHE_SIZE;
+        private Duration backgroundTokenRefresh = Authentication.NO_BACKGROUND_REFRESH;
+        private TokenStore tokenStore = TokenStore.NONE;
+        private boolean lazyLogin = false;
+        private final List<NiuListener> listeners = new ArrayList<>();
+        private Watcher.Intervals watchIntervals = Watcher.Intervals.DEFAULT;
+        private final Set<Endpoint> fingerprinted = EnumSet.noneOf(Endpoint.class);
+        private final Map<String, RateLimiter.Limit> hostRateLimits = new HashMap<>();
+        private RateLimiter.Limit rateLimit = null;
+        private NiuTransport transport = null;
+        private final Set<Endpoint> hedged = EnumSet.noneOf(Endpoint.class);
+        private Duration deadline = null;
+        private ConcurrencyLimiter.Configuration concurrency = ConcurrencyLimiter.Configuration.DISABLED;
+        private final Map<Endpoint, Duration> maxStaleness = new EnumMap<>(Endpoint.class);
 
         public Builder(String account, String password, String countryCode) {
             this.account = account;
@@ -35,26 +88,321 @@ public class Niu {
             return this;
         }
 
+        /**
+         * Retries failed requests with exponential backoff and jitter, starting
+         * at {@code delay} and doubling up to {@code maxDelay}. A Retry-After
+         * of the server is honoured instead.
+         */
+        public Builder retry(int retries, Duration delay, Duration maxDelay) {
+            retry = new Configuration(retries, delay, maxDelay, DEFAULT_RETRY.jitter());
+            return this;
+        }
+
+        /**
+         * Limits the number of concurrent requests of {@link Niu#snapshot()}.
+         */
+        public Builder fleetConcurrency(int fleetConcurrency) {
+            if (fleetConcurrency < 1) {
+                throw new IllegalArgumentException("fleetConcurrency must be positive");
+            }
+            this.fleetConcurrency = fleetConcurrency;
+            return this;
+        }
+
+        /**
+         * Caches responses of the endpoint for the given TTL. Concurrent
+         * requests for the same vehicle share one request, a zero TTL does
+         * only that.
+         */
+        public Builder cache(Endpoint endpoint, Duration ttl) {
+            if (ttl.isNegative()) {
+                throw new IllegalArgumentException("ttl must not be negative");
+            }
+            cacheTtls.put(endpoint, ttl);
+            return this;
+        }
+
+        /**
+         * Limits the number of cached responses, the least recently used ones
+         * are evicted.
+         */
+        public Builder cacheSize(int cacheSize) {
+            if (cacheSize < 1) {
+                throw new IllegalArgumentException("cacheSize must be positive");
+            }
+            this.cacheSize = cacheSize;
+            return this;
+        }
+
+        /**
+         * Renews the token in the background this long before it expires, so
+         * that requests don't wait for the login.
+         */
+        public Builder backgroundTokenRefresh(Duration lead) {
+            if (lead.isNegative() || lead.isZero()) {
+                throw new IllegalArgumentException("lead must be positive");
+            }
+            backgroundTokenRefresh = lead;
+            return this;
+        }
+
+        /**
+         * Loads a still valid token at startup instead of logging in, and
+         * stores every renewed token.
+         *
+         * @see FileTokenStore
+         */
+        public Builder tokenStore(TokenStore tokenStore) {
+            this.tokenStore = requireNonNull(tokenStore);
+            return this;
+        }
+
+        /**
+         * {@link #build()} returns without logging in. The login happens with
+         * the first request, or with {@link Niu#warmUp()}.
+         */
+        public Builder lazyLogin() {
+            lazyLogin = true;
+            return this;
+        }
+
+        /**
+         * Registers a listener for request, retry and token refresh events.
+         *
+         * @see MetricsListener
+         */
+        public Builder listener(NiuListener listener) {
+            listeners.add(requireNonNull(listener));
+            return this;
+        }
+
+        /**
+         * Polling intervals of {@link Niu#watch(String, WatchListener)}.
+         *
+         * @param active
+         *            while the vehicle is moving or charging
+         * @param connected
+         *            while the vehicle is parked, but connected
+         * @param idle
+         *            while the vehicle is parked and disconnected
+         */
+        public Builder watchIntervals(Duration active, Duration connected, Duration idle) {
+            watchIntervals = new Watcher.Intervals(active, connected, idle);
+            return this;
+        }
+
+        /**
+         * Doesn't decode a response of this endpoint again, if its body is
+         * identical to the previous one for the same vehicle. The previously
+         * returned instance is returned instead, so that callers can detect an
+         * unchanged value by identity. This saves CPU for parked vehicles.
+         */
+        public Builder skipUnchangedDecoding(Endpoint endpoint) {
+            fingerprinted.add(requireNonNull(endpoint));
+            return this;
+        }
+
+        /**
+         * Limits the requests per host, e.g. app-api-fk.niu.com and
+         * account-fk.niu.com are limited independently. Requests wait for
+         * their turn. A 429 response lowers the rate temporarily.
+         *
+         * @param burst
+         *            requests that may be sent at once after an idle period
+         */
+        public Builder rateLimit(double requestsPerSecond, int burst) {
+            rateLimit = new RateLimiter.Limit(requestsPerSecond, burst);
+            return this;
+        }
+
+        /**
+         * Overrides {@link #rateLimit(double, int)} for one host.
+         */
+        public Builder rateLimit(String host, double requestsPerSecond, int burst) {
+            hostRateLimits.put(requireNonNull(host), new RateLimiter.Limit(requestsPerSecond, burst));
+            return this;
+        }
+
+        /**
+         * Sends a second request, if a request of this endpoint takes longer
+         * than 95% of its recent requests, and uses whichever answers first.
+         * This cuts the tail latency at the cost of at most 5% extra requests.
+         * Only the idempotent {@link Endpoint#VEHICLE} and
+         * {@link Endpoint#BATTERY_INFO} can be hedged.
+         */
+        public Builder hedge(Endpoint endpoint) {
+            if (endpoint != Endpoint.VEHICLE && endpoint != Endpoint.BATTERY_INFO) {
+                throw new IllegalArgumentException(endpoint + " can't be hedged");
+            }
+            hedged.add(endpoint);
+            return this;
+        }
+
+        /**
+         * Serves the last good response for the vehicle right away and
+         * refreshes it in the background, so that a backend outage doesn't
+         * block or fail the calls. A failing refresh keeps the old response,
+         * until it's older than {@code maxStaleness}. Then calls wait for the
+         * request again. The age of a returned value is available with
+         * {@link Niu#agedVehicle(String)} and
+         * {@link Niu#agedBatteryInfo(String)}. Only {@link Endpoint#VEHICLE}
+         * and {@link Endpoint#BATTERY_INFO} can be served stale.
+         */
+        public Builder serveStale(Endpoint endpoint, Duration maxStaleness) {
+            if (endpoint != Endpoint.VEHICLE && endpoint != Endpoint.BATTERY_INFO) {
+                throw new IllegalArgumentException(endpoint + " can't be served stale");
+            }
+            if (maxStaleness.isNegative()) {
+                throw new IllegalArgumentException("maxStaleness must not be negative");
+            }
+            this.maxStaleness.put(endpoint, maxStaleness);
+            return this;
+        }
+
+        /**
+         * Adapts the number of requests in flight to the backend's latency and
+         * errors, between 1 and {@code maxConcurrency}. Further calls wait at
+         * most {@code maxWait} in a queue of {@code maxQueue} calls, and fail
+         * with {@link OverloadedException} otherwise.
+         *
+         * @see Niu#concurrency()
+         */
+        public Builder adaptiveConcurrency(int maxConcurrency, int maxQueue, Duration maxWait) {
+            concurrency = new ConcurrencyLimiter.Configuration(maxConcurrency, maxQueue, maxWait);
+            return this;
+        }
+
+        /**
+         * Shares the transport with other {@link Niu} instances, instead of
+         * creating an own HTTP client.
+         */
+        public Builder transport(NiuTransport transport) {
+            this.transport = requireNonNull(transport);
+            return this;
+        }
+
+        /**
+         * Bounds every call, including its token refresh, retries and retry
+         * delays, see {@link Niu#withDeadline(Duration)}.
+         */
+        public Builder deadline(Duration deadline) {
+            if (deadline.isNegative() || deadline.isZero()) {
+                throw new IllegalArgumentException("deadline must be positive");
+            }
+            this.deadline = deadline;
+            return this;
+        }
+
         public Niu build() throws IOException {
-            var client = new Client(timeout, Retry.build(retry));
-            var authentication = new Authentication(account, password, countryCode, expirationWindow, client);
-            return new Niu(client, authentication);
+            var ttls = cacheTtls.entrySet().stream().collect(toMap(it -> it.getKey().uri, Map.Entry::getValue));
+            var cache = new ResponseCache(new ResponseCache.Configuration(ttls, cacheSize));
+            var fingerprints = new Fingerprints(new Fingerprints.Configuration(
+                    fingerprinted.stream().map(it -> it.uri).collect(toSet()), FINGERPRINTS_SIZE));
+            var transport = this.transport != null ? this.transport
+                    : new NiuTransport(HttpClient.newBuilder().connectTimeout(timeout).build(), true);
+            var client = new Client(transport, Retry.build(retry), Client.DEFAULT_USER_AGENT, cache,
+                    Listeners.of(listeners), fingerprints,
+                    new RateLimiter(new RateLimiter.Configuration(hostRateLimits, rateLimit)),
+                    new Hedging(new Hedging.Configuration(hedged.stream().map(it -> it.uri).collect(toSet()),
+                            HEDGE_PERCENTILE, HEDGE_MAX_EXTRA_LOAD)),
+                    new ConcurrencyLimiter(concurrency));
+            var authentication = new Authentication(account, password, countryCode, expirationWindow,
+                    backgroundTokenRefresh, tokenStore, client);
+            if (!lazyLogin) {
+                authentication.token();
+            }
+            return new Niu(client, authentication, fleetConcurrency, watchIntervals, deadline, maxStaleness);
         }
     }
 
-    private Niu(Client client, Authentication authentication) {
+    Niu(Client client, Authentication authentication, int fleetConcurrency) {
+        this(client, authentication, fleetConcurrency, Watcher.Intervals.DEFAULT);
+    }
+
+    Niu(Client client, Authentication authentication, int fleetConcurrency, Watcher.Intervals watchIntervals) {
+        this(client, authentication, fleetConcurrency, watchIntervals, null, Map.of());
+    }
+
+    Niu(Client client, Authentication authentication, int fleetConcurrency, Watcher.Intervals watchIntervals,
+            Duration deadline, Map<Endpoint, Duration> maxStaleness) {
+
         this.client = client;
         this.authentication = authentication;
+        this.fleetConcurrency = fleetConcurrency;
+        this.watchIntervals = watchIntervals;
+        this.deadline = deadline;
+        vehicleLists = new Memo<>(client.isFingerprinted(VEHICLES_URI), Niu::vehicles);
+        odometers = new Memo<>(client.isFingerprinted(ODOMETER_URI), Niu::odometer);
+        vehicles = new LastKnownGood<>(maxStaleness.get(Endpoint.VEHICLE));
+        batteryInfos = new LastKnownGood<>(maxStaleness.get(Endpoint.BATTERY_INFO));
+    }
+
+    private Niu(Niu niu, Duration deadline) {
+        client = niu.client;
+        authentication = niu.authentication;
+        fleetConcurrency = niu.fleetConcurrency;
+        watchIntervals = niu.watchIntervals;
+        vehicleLists = niu.vehicleLists;
+        odometers = niu.odometers;
+        vehicles = niu.vehicles;
+        batteryInfos = niu.batteryInfos;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Returns a view of this instance, whose calls fail with
+     * {@link DeadlineExceededException} after {@code deadline}. The deadline
+     * starts with each call and covers its token refresh, every attempt and
+     * every delay between attempts. A retry which the remaining time can't
+     * cover fails right away. {@link #snapshot()} is one call, whose requests
+     * share one deadline.
+     */
+    public Niu withDeadline(Duration deadline) {
+        if (deadline.isNegative() || deadline.isZero()) {
+            throw new IllegalArgumentException("deadline must be positive");
+        }
+        return new Niu(this, deadline);
+    }
+
+    private Deadline deadline() {
+        return deadline == null ? Deadline.NONE : Deadline.after(deadline);
+    }
+
+    /**
+     * Logs in, if there's no valid token yet. This is meant for
+     * {@link Builder#lazyLogin()}, to login in the background before the first
+     * request.
+     */
+    public CompletableFuture<Void> warmUp() {
+        return authentication.tokenAsync().thenApply(token -> null);
     }
 
     private static final String VEHICLES_URI = "https://app-api-fk.niu.com/motoinfo/list";
+    private static final RequestTemplate VEHICLES_REQUEST = RequestTemplate.of(VEHICLES_URI);
 
-    public Vehicle[] vehicles() throws IOException {
-        record Response(Data[] data) {
-            record Data(String sn, String name) {
-            }
+    private record VehiclesResponse(Data[] data) {
+        record Data(String sn, String name) {
         }
-        var response = client.post(Response.class, VEHICLES_URI, authentication.token());
+    }
+
+    public Vehicle[] vehicles() throws IOException {
+        var deadline = deadline();
+        VehiclesResponse response = authentication.authenticated(deadline,
+                token -> client.post(VehiclesResponse.class, VEHICLES_REQUEST, token, deadline, Form.EMPTY));
+        return vehicleLists.convert(VEHICLES_URI, response);
+    }
+
+    public CompletableFuture<Vehicle[]> vehiclesAsync() {
+        var deadline = deadline();
+        return authentication.authenticatedAsync(deadline, token -> vehiclesAsync(token, deadline));
+    }
+
+    private CompletableFuture<Vehicle[]> vehiclesAsync(Token token, Deadline deadline) {
+        return Futures.map(client.postAsync(VehiclesResponse.class, VEHICLES_REQUEST, token, deadline, Form.EMPTY),
+                it -> vehicleLists.convert(VEHICLES_URI, it));
+    }
+
+    private static Vehicle[] vehicles(VehiclesResponse response) {
         return stream(response.data).map(it -> new Vehicle(it.sn, it.name)).toArray(Vehicle[]::new);
     }
 
@@ -62,55 +410,118 @@ public class Niu {
     }
 
     private static final String BATTERY_INFO_URI = "https://app-api-fk.niu.com/v3/motor_data/battery_info";
+    private static final RequestTemplate BATTERY_INFO_REQUEST = RequestTemplate.of(BATTERY_INFO_URI);
 
+    /**
+     * battery_info is decoded straight into the {@link BatteryInfo} by the
+     * {@link TelemetryDecoder}.
+     */
     public BatteryInfo batteryInfo(String serialNumber) throws IOException {
-        var uri = BATTERY_INFO_URI + "?sn=" + serialNumber;
-        record Response(Data data, int status) {
-            record Data(Batteries batteries, boolean isCharging) {
-                record Batteries(Battery compartmentA) {
-                    record Battery(int batteryCharging, int temperature, double gradeBattery) {
-                    }
-                }
-            }
+        if (batteryInfos.isEnabled()) {
+            return agedBatteryInfo(serialNumber).value();
         }
-        var response = client.get(Response.class, uri, authentication.token());
-        return new BatteryInfo(response.data.isCharging, response.data.batteries.compartmentA.batteryCharging,
-                response.data.batteries.compartmentA.temperature, response.data.batteries.compartmentA.gradeBattery,
-                response.status);
+        var query = serialNumber(serialNumber);
+        var deadline = deadline();
+        BatteryInfo info = authentication.authenticated(deadline,
+                token -> client.get(BatteryInfo.class, BATTERY_INFO_REQUEST, token, deadline, query));
+        return info;
+    }
+
+    public CompletableFuture<BatteryInfo> batteryInfoAsync(String serialNumber) {
+        if (batteryInfos.isEnabled()) {
+            return agedBatteryInfoAsync(serialNumber).thenApply(Aged::value);
+        }
+        return loadBatteryInfoAsync(serialNumber);
+    }
+
+    /**
+     * Like {@link #batteryInfo(String)}, but with the age of a value which was
+     * served stale.
+     *
+     * @see Builder#serveStale(Endpoint, Duration)
+     */
+    public Aged<BatteryInfo> agedBatteryInfo(String serialNumber) throws IOException {
+        if (!batteryInfos.isEnabled()) {
+            return Aged.fresh(batteryInfo(serialNumber));
+        }
+        return Futures.get(agedBatteryInfoAsync(serialNumber));
+    }
+
+    public CompletableFuture<Aged<BatteryInfo>> agedBatteryInfoAsync(String serialNumber) {
+        requireNonNull(serialNumber);
+        return batteryInfos.getAsync(serialNumber, deadline(), () -> loadBatteryInfoAsync(serialNumber));
+    }
+
+    private CompletableFuture<BatteryInfo> loadBatteryInfoAsync(String serialNumber) {
+        var deadline = deadline();
+        return authentication.authenticatedAsync(deadline, token -> batteryInfoAsync(token, deadline, serialNumber));
+    }
+
+    private CompletableFuture<BatteryInfo> batteryInfoAsync(Token token, Deadline deadline, String serialNumber) {
+        return client.getAsync(BatteryInfo.class, BATTERY_INFO_REQUEST, token, deadline, serialNumber(serialNumber));
     }
 
     public record BatteryInfo(boolean isCharging, int charge, int temperature, double grade, int status) {
     }
 
     private static final String INFO_URI = "https://app-api-fk.niu.com/v3/motor_data/index_info";
+    private static final RequestTemplate INFO_REQUEST = RequestTemplate.of(INFO_URI);
 
+    /**
+     * index_info is decoded straight into the {@link VehicleInfo} by the
+     * {@link TelemetryDecoder}.
+     */
     public VehicleInfo vehicle(String serialNumber) throws IOException {
-        var uri = INFO_URI + "?sn=" + serialNumber;
-        record Response(Data data, int status) {
-            record Data(Batteries batteries, boolean isCharging, int nowSpeed, int shakingValue, Position postion,
-                    int centreCtrlBattery, int gps, long gpsTimestamp, int gsm, long infoTimestamp, double leftTime,
-                    boolean isConnected, int estimatedMileage, int ss_online_sta, long time) {
-                record Position(double lat, double lng) {
-                }
-
-                record Batteries(Battery compartmentA) {
-                    record Battery(int batteryCharging, double gradeBattery) {
-                    }
-                }
-            }
+        if (vehicles.isEnabled()) {
+            return agedVehicle(serialNumber).value();
+        }
+        var query = serialNumber(serialNumber);
+        var deadline = deadline();
+        VehicleInfo info = authentication.authenticated(deadline,
+                token -> client.get(VehicleInfo.class, INFO_REQUEST, token, deadline, query));
+        return vehicle(info);
+    }
+
+    public CompletableFuture<VehicleInfo> vehicleAsync(String serialNumber) {
+        if (vehicles.isEnabled()) {
+            return agedVehicleAsync(serialNumber).thenApply(Aged::value);
+        }
+        return loadVehicleAsync(serialNumber);
+    }
+
+    /**
+     * Like {@link #vehicle(String)}, but with the age of a value which was
+     * served stale.
+     *
+     * @see Builder#serveStale(Endpoint, Duration)
+     */
+    public Aged<VehicleInfo> agedVehicle(String serialNumber) throws IOException {
+        if (!vehicles.isEnabled()) {
+            return Aged.fresh(vehicle(serialNumber));
         }
-        var response = client.get(Response.class, uri, authentication.token());
-        if (response.data.batteries == null) {
+        return Futures.get(agedVehicleAsync(serialNumber));
+    }
+
+    public CompletableFuture<Aged<VehicleInfo>> agedVehicleAsync(String serialNumber) {
+        requireNonNull(serialNumber);
+        return vehicles.getAsync(serialNumber, deadline(), () -> loadVehicleAsync(serialNumber));
+    }
+
+    private CompletableFuture<VehicleInfo> loadVehicleAsync(String serialNumber) {
+        var deadline = deadline();
+        return authentication.authenticatedAsync(deadline, token -> vehicleAsync(token, deadline, serialNumber));
+    }
+
+    private CompletableFuture<VehicleInfo> vehicleAsync(Token token, Deadline deadline, String serialNumber) {
+        return Futures.map(client.getAsync(VehicleInfo.class, INFO_REQUEST, token, deadline,
+                serialNumber(serialNumber)), Niu::vehicle);
+    }
+
+    private static VehicleInfo vehicle(VehicleInfo info) throws IOException {
+        if (info.battery() == null) {
             throw new IOException("data.batteries is missing");
         }
-        return new VehicleInfo(
-                new VehicleInfo.Battery(response.data.isCharging, response.data.batteries.compartmentA.batteryCharging,
-                        response.data.batteries.compartmentA.gradeBattery),
-                new VehicleInfo.Position(response.data.postion.lat, response.data.postion.lng), response.data.nowSpeed,
-                response.data.shakingValue, response.data.centreCtrlBattery, response.data.gps,
-                timestamp(response.data.gpsTimestamp), response.data.gsm, timestamp(response.data.infoTimestamp),
-                response.status, response.data.leftTime, response.data.isConnected, response.data.estimatedMileage,
-                response.data.ss_online_sta, timestamp(response.data.time));
+        return info;
     }
 
     public static record VehicleInfo(Battery battery, Position position, int nowSpeed, int shakingValue,
@@ -125,21 +536,189 @@ public class Niu {
     }
 
     private static final String ODOMETER_URI = "https://app-api-fk.niu.com/motoinfo/overallTally";
+    private static final RequestTemplate ODOMETER_REQUEST = RequestTemplate.of(ODOMETER_URI);
 
-    public Odometer odometer(String serialNumber) throws IOException {
-        record Response(Data data, int status) {
-            record Data(int bindDaysCount, double totalMileage) {
-            }
+    private record OdometerResponse(Data data, int status) {
+        record Data(int bindDaysCount, double totalMileage) {
         }
-        var response = client.post(Response.class, ODOMETER_URI, authentication.token(), new Field("sn", serialNumber));
+    }
+
+    public Odometer odometer(String serialNumber) throws IOException {
+        var deadline = deadline();
+        var body = serialNumber(serialNumber);
+        OdometerResponse response = authentication.authenticated(deadline,
+                token -> client.post(OdometerResponse.class, ODOMETER_REQUEST, token, deadline, body));
+        return odometers.convert(serialNumber, response);
+    }
+
+    public CompletableFuture<Odometer> odometerAsync(String serialNumber) {
+        var deadline = deadline();
+        return authentication.authenticatedAsync(deadline, token -> odometerAsync(token, deadline, serialNumber));
+    }
+
+    private CompletableFuture<Odometer> odometerAsync(Token token, Deadline deadline, String serialNumber) {
+        return Futures.map(client.postAsync(OdometerResponse.class, ODOMETER_REQUEST, token, deadline,
+                serialNumber(serialNumber)), it -> odometers.convert(serialNumber, it));
+    }
+
+    private static Form serialNumber(String serialNumber) {
+        return Form.of(new Field("sn", serialNumber));
+    }
+
+    private static Odometer odometer(OdometerResponse response) {
         return new Odometer(response.data.bindDaysCount, response.data.totalMileage);
     }
 
     public record Odometer(int days, double mileage) {
     }
 
-    private static Instant timestamp(long timestamp) {
-        return Instant.ofEpochMilli(timestamp);
+    /**
+     * A value and its age. Only a value which was served stale is older than
+     * {@link Duration#ZERO}, see {@link Builder#serveStale(Endpoint, Duration)}.
+     */
+    public record Aged<T>(T value, Duration age) {
+
+        static <T> Aged<T> fresh(T value) {
+            return new Aged<>(value, Duration.ZERO);
+        }
+    }
+
+    /**
+     * Fetches {@link #vehicle(String)}, {@link #batteryInfo(String)} and
+     * {@link #odometer(String)} for every vehicle of the account concurrently.
+     * A failing vehicle doesn't fail the whole snapshot, but is reported in
+     * {@link VehicleSnapshot#failure()}.
+     */
+    public VehicleSnapshot[] snapshot() throws IOException {
+        return Futures.get(snapshotAsync());
+    }
+
+    public CompletableFuture<VehicleSnapshot[]> snapshotAsync() {
+        var deadline = deadline();
+        return authentication.tokenAsync(deadline).thenCompose(token -> vehiclesAsync(token, deadline)
+                .thenCompose(vehicles -> {
+                    var throttle = new Throttle(fleetConcurrency);
+                    var snapshots = stream(vehicles).map(it -> snapshotAsync(throttle, token, deadline, it))
+                            .toList();
+                    return CompletableFuture.allOf(snapshots.toArray(CompletableFuture<?>[]::new)).thenApply(
+                            ignore -> snapshots.stream().map(CompletableFuture::join).toArray(VehicleSnapshot[]::new));
+                }));
+    }
+
+    private CompletableFuture<VehicleSnapshot> snapshotAsync(Throttle throttle, Token token, Deadline deadline,
+            Vehicle vehicle) {
+
+        var sn = vehicle.serialNumber;
+        var info = throttle.submit(() -> vehicleAsync(token, deadline, sn));
+        var batteryInfo = throttle.submit(() -> batteryInfoAsync(token, deadline, sn));
+        var odometer = throttle.submit(() -> odometerAsync(token, deadline, sn));
+        return CompletableFuture.allOf(info, batteryInfo, odometer).handle((ignore, error) -> {
+            if (error == null) {
+                return new VehicleSnapshot(vehicle, info.join(), batteryInfo.join(), odometer.join(), null);
+            }
+            var cause = Futures.unwrap(error);
+            var failure = cause instanceof IOException ioException ? ioException : new IOException(cause);
+            return new VehicleSnapshot(vehicle, valueOrNull(info), valueOrNull(batteryInfo), valueOrNull(odometer),
+                    failure);
+        });
+    }
+
+    private static <T> T valueOrNull(CompletableFuture<T> future) {
+        return future.isCompletedExceptionally() ? null : future.getNow(null);
+    }
+
+    /**
+     * Any of {@code info}, {@code batteryInfo} and {@code odometer} may be
+     * {@code null} if {@code failure} is set.
+     */
+    public record VehicleSnapshot(Vehicle vehicle, VehicleInfo info, BatteryInfo batteryInfo, Odometer odometer,
+            IOException failure) {
+
+        public boolean isSuccess() {
+            return failure == null;
+        }
+    }
+
+    /**
+     * The state of {@link Builder#adaptiveConcurrency(int, int, Duration)}, for
+     * monitoring.
+     *
+     * @param limit
+     *            The current limit of requests in flight.
+     * @param queued
+     *            Calls waiting for a free slot.
+     * @param shed
+     *            Calls which failed with {@link OverloadedException} so far.
+     */
+    public record Concurrency(int limit, int inFlight, int queued, long shed) {
+    }
+
+    public Concurrency concurrency() {
+        var limiter = client.concurrencyLimiter();
+        return new Concurrency((int) limiter.limit(), limiter.inFlight(), limiter.queued(), limiter.shed());
+    }
+
+    /**
+     * Streams {@link #vehicle(String)}. Polling follows the subscribers'
+     * demand, but happens at most every {@code interval}. A subscriber that
+     * falls behind receives only the latest sample. Failed polls are skipped,
+     * the subscriber isn't told about them.
+     */
+    public Flow.Publisher<VehicleInfo> vehiclePublisher(String serialNumber, Duration interval) {
+        requireNonNull(serialNumber);
+        return new PollingPublisher<>(() -> vehicleAsync(serialNumber), interval);
+    }
+
+    /**
+     * Streams {@link #batteryInfo(String)} like
+     * {@link #vehiclePublisher(String, Duration)}.
+     */
+    public Flow.Publisher<BatteryInfo> batteryInfoPublisher(String serialNumber, Duration interval) {
+        requireNonNull(serialNumber);
+        return new PollingPublisher<>(() -> batteryInfoAsync(serialNumber), interval);
+    }
+
+    /**
+     * Streams {@link #snapshot()} of the whole fleet like
+     * {@link #vehiclePublisher(String, Duration)}.
+     */
+    public Flow.Publisher<List<VehicleSnapshot>> fleetPublisher(Duration interval) {
+        return new PollingPublisher<>(() -> snapshotAsync().thenApply(List::of), interval);
+    }
+
+    /**
+     * Polls {@link #vehicle(String)} until the watch is closed. The polling
+     * interval adapts to the vehicle's state, see
+     * {@link Builder#watchIntervals(Duration, Duration, Duration)}. All watches
+     * share one scheduler thread, the listener is called from the HTTP
+     * client's threads and must not block.
+     */
+    public Watch watch(String serialNumber, WatchListener listener) {
+        return new Watcher(serialNumber, this::vehicleAsync, listener, watchIntervals).start();
+    }
+
+    @FunctionalInterface
+    public interface WatchListener {
+
+        /**
+         * Called with the first value and then whenever it changed.
+         */
+        void onChange(VehicleInfo info);
+
+        /**
+         * A failed poll doesn't end the watch.
+         */
+        default void onFailure(IOException failure) {
+        }
+    }
+
+    public interface Watch extends AutoCloseable {
+
+        /**
+         * Stops polling.
+         */
+        @Override
+        void close();
     }
 
 }
@@ -0,0 +1,57 @@
+package de.malkusch.niu;
+
+import java.time.Duration;
+
+/**
+ * Observes requests, retries and token refreshes. Listeners are called
+ * synchronously on the request's thread and should return quickly. Exceptions
+ * thrown by a listener are ignored.
+ *
+ * @see MetricsListener
+ */
+public interface NiuListener {
+
+    enum Outcome {
+        SUCCESS, HTTP_ERROR, TRANSPORT_ERROR, DECODE_ERROR, DEADLINE_EXCEEDED
+    }
+
+    /**
+     * One HTTP exchange. {@code status} is 0 if there was no response,
+     * {@code bytes} is the size of the received, possibly compressed body.
+     * {@code uncompressedBytes} is the size of the decoded body after
+     * decompression, which is 0 if the body wasn't decoded.
+     */
+    record AttemptEvent(String endpoint, int attempt, Outcome outcome, int status, long bytes,
+            long uncompressedBytes, Duration duration, Throwable failure) {
+    }
+
+    /**
+     * A whole call including all retries and the delays between them.
+     * {@code decoding} is the time spent in the JSON decoder, which overlaps
+     * with receiving the body when the body is streamed. {@code unchanged}
+     * tells that the body was identical to the previous one and wasn't
+     * decoded again.
+     */
+    record RequestEvent(String endpoint, Outcome outcome, int status, int attempts, long bytes,
+            long uncompressedBytes, Duration duration, Duration decoding, boolean unchanged, Throwable failure) {
+    }
+
+    enum Grant {
+        PASSWORD, REFRESH_TOKEN
+    }
+
+    record TokenRefreshEvent(Grant grant, Duration duration, Throwable failure) {
+    }
+
+    default void onAttempt(AttemptEvent event) {
+    }
+
+    default void onRequest(RequestEvent event) {
+    }
+
+    default void onTokenRefresh(TokenRefreshEvent event) {
+    }
+
+    NiuListener NONE = new NiuListener() {
+    };
+}
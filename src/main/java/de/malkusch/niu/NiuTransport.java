@@ -0,0 +1,137 @@
+package de.malkusch.niu;
+
+import static java.util.Objects.requireNonNull;
+import static tools.jackson.core.StreamReadFeature.AUTO_CLOSE_SOURCE;
+import static tools.jackson.databind.DeserializationFeature.FAIL_ON_NULL_FOR_PRIMITIVES;
+import static tools.jackson.databind.DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Shares one HTTP client and one JSON mapper between many {@link Niu}
+ * instances, e.g. one per customer account. The HTTP client multiplexes the
+ * requests of all accounts over HTTP/2 connections, and the mapper's caches
+ * stay warm. Each account keeps its own login.
+ * <p>
+ * The HTTP client can be replaced by another {@link HttpTransport}, e.g. an
+ * {@link InMemoryTransport} in benchmarks.
+ *
+ * @see Niu.Builder#transport(NiuTransport)
+ */
+public final class NiuTransport {
+
+    public static final class Builder {
+        private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(10);
+        private static final int DEFAULT_CONCURRENT_LOGINS = 4;
+
+        private Duration timeout = DEFAULT_TIMEOUT;
+        private int concurrentLogins = DEFAULT_CONCURRENT_LOGINS;
+        private boolean compression = true;
+        private HttpTransport http;
+
+        public Builder timeout(Duration timeout) {
+            this.timeout = requireNonNull(timeout);
+            return this;
+        }
+
+        /**
+         * Limits the logins of all accounts that run at the same time, e.g.
+         * when many accounts start at once. Further logins wait.
+         */
+        public Builder concurrentLogins(int concurrentLogins) {
+            if (concurrentLogins < 1) {
+                throw new IllegalArgumentException("concurrentLogins must be positive");
+            }
+            this.concurrentLogins = concurrentLogins;
+            return this;
+        }
+
+        /**
+         * Doesn't ask for gzip or deflate compressed responses, e.g. when the
+         * CPU is scarcer than the bandwidth.
+         */
+        public Builder disabledCompression() {
+            compression = false;
+            return this;
+        }
+
+        /**
+         * Sends with this transport instead of the JDK's HTTP client. The
+         * transport's own timeout replaces {@link #timeout(Duration)}.
+         */
+        public Builder httpTransport(HttpTransport http) {
+            this.http = requireNonNull(http);
+            return this;
+        }
+
+        public NiuTransport build() {
+            if (http != null) {
+                return new NiuTransport(http, newMapper(), concurrentLogins, compression);
+            }
+            var httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).connectTimeout(timeout)
+                    .build();
+            return new NiuTransport(httpClient, newMapper(), concurrentLogins, compression);
+        }
+    }
+
+    private final HttpTransport http;
+    private final ObjectMapper mapper;
+    private final Throttle logins;
+    private final boolean compression;
+
+    /**
+     * A transport for a single client, which doesn't limit logins and doesn't
+     * ask for compressed responses.
+     */
+    NiuTransport(HttpClient httpClient) {
+        this(httpClient, false);
+    }
+
+    NiuTransport(HttpClient httpClient, boolean compression) {
+        this(httpClient, newMapper(), Integer.MAX_VALUE, compression);
+    }
+
+    NiuTransport(HttpClient httpClient, ObjectMapper mapper, int concurrentLogins, boolean compression) {
+        this(new HttpClientTransport(httpClient), mapper, concurrentLogins, compression);
+    }
+
+    NiuTransport(HttpTransport http, boolean compression) {
+        this(http, newMapper(), Integer.MAX_VALUE, compression);
+    }
+
+    NiuTransport(HttpTransport http, ObjectMapper mapper, int concurrentLogins, boolean compression) {
+        this.http = requireNonNull(http);
+        this.mapper = requireNonNull(mapper);
+        this.logins = new Throttle(concurrentLogins);
+        this.compression = compression;
+    }
+
+    static ObjectMapper newMapper() {
+        return JsonMapper.builder()
+                .configure(FAIL_ON_UNKNOWN_PROPERTIES, false)
+                .configure(FAIL_ON_NULL_FOR_PRIMITIVES, false)
+                .configure(AUTO_CLOSE_SOURCE, false)
+                .addModule(TelemetryDecoder.module())
+                .build();
+    }
+
+    HttpTransport http() {
+        return http;
+    }
+
+    ObjectMapper mapper() {
+        return mapper;
+    }
+
+    Throttle logins() {
+        return logins;
+    }
+
+    boolean compression() {
+        return compression;
+    }
+}
@@ -0,0 +1,18 @@
+package de.malkusch.niu;
+
+import java.io.IOException;
+
+/**
+ * The call was shed without a request, because the adaptive concurrency limit
+ * was reached and no slot became free in time.
+ *
+ * @see Niu.Builder#adaptiveConcurrency(int, int, java.time.Duration)
+ */
+public final class OverloadedException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    OverloadedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,178 @@
+package de.malkusch.niu;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Polls at most every {@code interval}, and only while a subscriber has
+ * outstanding demand. Each subscriber holds at most one undelivered sample,
+ * which a newer one replaces. Failed polls are skipped without signalling the
+ * subscribers, whose subscriptions stay open. The publisher doesn't report the
+ * failures itself, only the failed requests reach the {@link NiuListener} as
+ * {@link NiuListener.RequestEvent}s.
+ */
+final class PollingPublisher<T> implements Flow.Publisher<T> {
+
+    private final Supplier<CompletableFuture<T>> fetch;
+    private final long interval;
+    private final ScheduledExecutorService scheduler;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    private final Object lock = new Object();
+    private boolean polling;
+    private long lastPoll;
+
+    PollingPublisher(Supplier<CompletableFuture<T>> fetch, Duration interval) {
+        this(fetch, interval, Futures.SCHEDULER);
+    }
+
+    /**
+     * @param scheduler
+     *            Starts the polls.
+     */
+    PollingPublisher(Supplier<CompletableFuture<T>> fetch, Duration interval, ScheduledExecutorService scheduler) {
+        this.fetch = requireNonNull(fetch);
+        this.scheduler = requireNonNull(scheduler);
+        if (interval.isNegative() || interval.isZero()) {
+            throw new IllegalArgumentException("interval must be positive");
+        }
+        this.interval = interval.toNanos();
+        this.lastPoll = System.nanoTime() - this.interval;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        var subscription = new Subscription(requireNonNull(subscriber));
+        subscriptions.add(subscription);
+        subscriber.onSubscribe(subscription);
+    }
+
+    int subscribers() {
+        return subscriptions.size();
+    }
+
+    private void pollIfDemanded() {
+        long delay;
+        synchronized (lock) {
+            if (polling || !isDemanded()) {
+                return;
+            }
+            polling = true;
+            delay = Math.max(0, lastPoll + interval - System.nanoTime());
+        }
+        scheduler.schedule(this::poll, delay, NANOSECONDS);
+    }
+
+    private boolean isDemanded() {
+        for (var subscription : subscriptions) {
+            if (subscription.demand.get() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void poll() {
+        synchronized (lock) {
+            lastPoll = System.nanoTime();
+        }
+        CompletableFuture<T> sample;
+        try {
+            sample = fetch.get();
+
+        } catch (RuntimeException e) {
+            sample = CompletableFuture.failedFuture(e);
+        }
+        sample.whenComplete((value, error) -> {
+            if (error == null) {
+                for (var subscription : subscriptions) {
+                    subscription.offer(value);
+                }
+            }
+            synchronized (lock) {
+                polling = false;
+            }
+            pollIfDemanded();
+        });
+    }
+
+    private final class Subscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super T> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicReference<T> latest = new AtomicReference<>();
+        private final AtomicInteger draining = new AtomicInteger();
+        private volatile boolean cancelled;
+
+        Subscription(Flow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (cancelled) {
+                return;
+            }
+            if (n <= 0) {
+                cancel();
+                subscriber.onError(new IllegalArgumentException("request must be positive"));
+                return;
+            }
+            demand.accumulateAndGet(n, (current, added) -> {
+                var sum = current + added;
+                return sum < 0 ? Long.MAX_VALUE : sum;
+            });
+            drain();
+            pollIfDemanded();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+            latest.set(null);
+        }
+
+        void offer(T value) {
+            latest.set(value);
+            drain();
+        }
+
+        /**
+         * Serializes onNext calls, also when the subscriber requests from
+         * within onNext.
+         */
+        private void drain() {
+            if (draining.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                while (!cancelled && demand.get() > 0) {
+                    var value = latest.getAndSet(null);
+                    if (value == null) {
+                        break;
+                    }
+                    demand.decrementAndGet();
+                    try {
+                        subscriber.onNext(value);
+
+                    } catch (RuntimeException e) {
+                        // A throwing subscriber is broken, see rule 2.13
+                        cancel();
+                    }
+                }
+            } while (draining.decrementAndGet() != 0);
+        }
+    }
+}
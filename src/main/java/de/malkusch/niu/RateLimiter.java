@@ -0,0 +1,238 @@
+package de.malkusch.niu;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket per host. Requests wait for a token instead of being
+ * rejected. A 429 halves the host's rate, every successful response raises it
+ * again by a small step up to the configured rate.
+ */
+final class RateLimiter {
+
+    /**
+     * @param requestsPerSecond
+     *            The rate which isn't exceeded, also after recovering from
+     *            429s.
+     * @param burst
+     *            The number of requests that may be sent at once after an idle
+     *            period.
+     */
+    record Limit(double requestsPerSecond, int burst) {
+
+        Limit {
+            if (requestsPerSecond <= 0) {
+                throw new IllegalArgumentException("requestsPerSecond must be positive");
+            }
+            if (burst < 1) {
+                throw new IllegalArgumentException("burst must be positive");
+            }
+        }
+    }
+
+    /**
+     * @param hosts
+     *            Limits for individual hosts.
+     * @param defaultLimit
+     *            The limit of any other host, {@code null} doesn't limit them.
+     */
+    record Configuration(Map<String, Limit> hosts, Limit defaultLimit) {
+
+        static final Configuration DISABLED = new Configuration(Map.of(), null);
+
+        Configuration {
+            hosts = Map.copyOf(hosts);
+        }
+
+        boolean isDisabled() {
+            return hosts.isEmpty() && defaultLimit == null;
+        }
+    }
+
+    static final RateLimiter DISABLED = new RateLimiter(Configuration.DISABLED);
+
+    /**
+     * A 429 never lowers the rate below this share of the configured rate.
+     */
+    private static final double MIN_RATE = 0.05;
+    private static final double INCREASE = 0.01;
+    private static final double DECREASE = 0.5;
+
+    /**
+     * The 429s of requests that were sent at the old rate don't lower the rate
+     * again.
+     */
+    private static final long DECREASE_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    private final Configuration configuration;
+    private final boolean disabled;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    RateLimiter(Configuration configuration) {
+        this.configuration = requireNonNull(configuration);
+        disabled = configuration.isDisabled();
+    }
+
+    /**
+     * Blocks until a request to {@code host} may be sent.
+     */
+    void acquire(String host) throws InterruptedException {
+        var wait = reserve(host);
+        if (wait > 0) {
+            NANOSECONDS.sleep(wait);
+        }
+    }
+
+    /**
+     * Blocks until a request to {@code host} may be sent. A request which
+     * would have to wait beyond the deadline doesn't take a token.
+     *
+     * @throws DeadlineExceededException
+     *             if the token comes too late for the deadline
+     */
+    void acquire(String host, Deadline deadline) throws DeadlineExceededException, InterruptedException {
+        var wait = reserve(host, deadline);
+        if (wait > 0) {
+            NANOSECONDS.sleep(wait);
+        }
+    }
+
+    CompletableFuture<Void> acquireAsync(String host) {
+        return acquireAsync(host, Deadline.NONE);
+    }
+
+    CompletableFuture<Void> acquireAsync(String host, Deadline deadline) {
+        long wait;
+        try {
+            wait = reserve(host, deadline);
+
+        } catch (DeadlineExceededException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (wait <= 0) {
+            return completedFuture(null);
+        }
+        var acquired = new CompletableFuture<Void>();
+        Futures.SCHEDULER.schedule(() -> acquired.complete(null), wait, NANOSECONDS);
+        return acquired;
+    }
+
+    void onResponse(String host, int status) {
+        var bucket = bucket(host);
+        if (bucket == null) {
+            return;
+        }
+        if (status == 429) {
+            bucket.decrease();
+        } else if (status >= 100 && status < 400) {
+            bucket.increase();
+        }
+    }
+
+    double rate(String host) {
+        var bucket = bucket(host);
+        return bucket == null ? Double.POSITIVE_INFINITY : bucket.rate();
+    }
+
+    private long reserve(String host) {
+        var bucket = bucket(host);
+        return bucket == null ? 0 : bucket.reserve();
+    }
+
+    private long reserve(String host, Deadline deadline) throws DeadlineExceededException {
+        var bucket = bucket(host);
+        if (bucket == null) {
+            return 0;
+        }
+        var wait = bucket.reserve();
+        if (wait > 0 && !deadline.covers(Duration.ofNanos(wait))) {
+            bucket.unreserve();
+            throw deadline.exceeded(null);
+        }
+        return wait;
+    }
+
+    private Bucket bucket(String host) {
+        if (disabled || host == null) {
+            return null;
+        }
+        var limit = configuration.hosts().getOrDefault(host, configuration.defaultLimit());
+        if (limit == null) {
+            return null;
+        }
+        return buckets.computeIfAbsent(host, it -> new Bucket(limit));
+    }
+
+    private static final class Bucket {
+
+        private final double maxRate;
+        private final double burst;
+        private double rate;
+        private double tokens;
+        private long refilled = System.nanoTime();
+        private long decreased = refilled - DECREASE_INTERVAL;
+
+        Bucket(Limit limit) {
+            maxRate = limit.requestsPerSecond();
+            burst = limit.burst();
+            rate = maxRate;
+            tokens = burst;
+        }
+
+        /**
+         * Takes a token, which may not be there yet. Tokens can go negative,
+         * so that waiting requests are queued in the order they reserved.
+         *
+         * @return nanoseconds to wait for the token
+         */
+        synchronized long reserve() {
+            refill(System.nanoTime());
+            tokens--;
+            if (tokens >= 0) {
+                return 0;
+            }
+            return (long) (-tokens / rate * TimeUnit.SECONDS.toNanos(1));
+        }
+
+        /**
+         * Gives back a token which was reserved, but not used.
+         */
+        synchronized void unreserve() {
+            tokens++;
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(burst, tokens + (now - refilled) * rate / TimeUnit.SECONDS.toNanos(1));
+            refilled = now;
+        }
+
+        synchronized void decrease() {
+            var now = System.nanoTime();
+            if (now - decreased < DECREASE_INTERVAL) {
+                return;
+            }
+            refill(now);
+            decreased = now;
+            rate = Math.max(maxRate * MIN_RATE, rate * DECREASE);
+        }
+
+        synchronized void increase() {
+            if (rate >= maxRate) {
+                return;
+            }
+            refill(System.nanoTime());
+            rate = Math.min(maxRate, rate + maxRate * INCREASE);
+        }
+
+        synchronized double rate() {
+            return rate;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package de.malkusch.niu;
+
+import static java.util.Objects.requireNonNull;
+
+import java.net.URI;
+
+/**
+ * One endpoint's request, prepared once: its parsed URI and its name for the
+ * {@link NiuListener}. A call adds only its query, body and token.
+ */
+final class RequestTemplate {
+
+    private final String url;
+    private final URI uri;
+    private final String endpoint;
+
+    private RequestTemplate(String url) {
+        this.url = requireNonNull(url);
+        uri = URI.create(url);
+        endpoint = uri.getScheme() + "://" + uri.getAuthority() + uri.getPath();
+    }
+
+    static RequestTemplate of(String url) {
+        return new RequestTemplate(url);
+    }
+
+    String url() {
+        return url;
+    }
+
+    URI uri() {
+        return uri;
+    }
+
+    String url(Form query) {
+        if (query.isEmpty()) {
+            return url;
+        }
+        return url + '?' + query;
+    }
+
+    /**
+     * Parses only URIs with a query, the template's own URI is reused.
+     */
+    URI uri(Form query, String url) {
+        return query.isEmpty() ? uri : URI.create(url);
+    }
+
+    String endpoint() {
+        return endpoint;
+    }
+}
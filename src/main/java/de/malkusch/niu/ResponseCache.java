@@ -0,0 +1,176 @@
+package de.malkusch.niu;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Caches decoded responses per endpoint for a configured TTL. Concurrent
+ * requests for the same key share one in-flight request. Failures are never
+ * cached. Endpoints without a TTL bypass the cache.
+ */
+final class ResponseCache {
+
+    record Configuration(Map<String, Duration> ttls, int maxSize) {
+
+        static final Configuration DISABLED = new Configuration(Map.of(), 0);
+
+        Configuration {
+            ttls = Map.copyOf(ttls);
+            for (var ttl : ttls.values()) {
+                if (ttl.isNegative()) {
+                    throw new IllegalArgumentException("ttl must not be negative");
+                }
+            }
+            if (maxSize < 0) {
+                throw new IllegalArgumentException("maxSize must not be negative");
+            }
+        }
+
+        boolean isDisabled() {
+            return ttls.isEmpty() || maxSize == 0;
+        }
+    }
+
+    static final ResponseCache DISABLED = new ResponseCache(Configuration.DISABLED);
+
+    @FunctionalInterface
+    interface Loader<T> {
+        T load() throws IOException;
+    }
+
+    private record Key(Class<?> type, String url, Form body) {
+    }
+
+    private static final class Entry {
+        private final CompletableFuture<Object> value = new CompletableFuture<>();
+        private volatile long expiresAt;
+
+        boolean isValid(long now) {
+            return !value.isDone() || expiresAt - now > 0;
+        }
+    }
+
+    private record Lookup(Entry entry, boolean isOwner) {
+    }
+
+    private final Map<String, Duration> ttls;
+    private final Map<Key, Entry> entries;
+    private final boolean disabled;
+
+    ResponseCache(Configuration configuration) {
+        ttls = configuration.ttls();
+        disabled = configuration.isDisabled();
+        var maxSize = configuration.maxSize();
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    <T> T get(Class<T> type, String url, Form body, Loader<T> loader) throws IOException {
+        return get(type, url, body, Deadline.NONE, loader);
+    }
+
+    /**
+     * @param deadline
+     *            Bounds the wait for a request which is already in flight.
+     */
+    <T> T get(Class<T> type, String url, Form body, Deadline deadline, Loader<T> loader) throws IOException {
+        var ttl = ttl(url);
+        if (ttl == null) {
+            return loader.load();
+        }
+        var key = new Key(type, url, body);
+        var lookup = lookup(key);
+        if (!lookup.isOwner) {
+            return type.cast(deadline.get(lookup.entry.value));
+        }
+        try {
+            var value = loader.load();
+            complete(key, lookup.entry, ttl, value, null);
+            return value;
+
+        } catch (IOException | RuntimeException | Error e) {
+            complete(key, lookup.entry, ttl, null, e);
+            throw e;
+        }
+    }
+
+    <T> CompletableFuture<T> getAsync(Class<T> type, String url, Form body,
+            Supplier<CompletableFuture<T>> loader) {
+
+        return getAsync(type, url, body, Deadline.NONE, loader);
+    }
+
+    <T> CompletableFuture<T> getAsync(Class<T> type, String url, Form body, Deadline deadline,
+            Supplier<CompletableFuture<T>> loader) {
+
+        var ttl = ttl(url);
+        if (ttl == null) {
+            return loader.get();
+        }
+        var key = new Key(type, url, body);
+        var lookup = lookup(key);
+        if (lookup.isOwner) {
+            CompletableFuture<T> loading;
+            try {
+                loading = loader.get();
+
+            } catch (RuntimeException | Error e) {
+                loading = CompletableFuture.failedFuture(e);
+            }
+            loading.whenComplete((value, error) -> complete(key, lookup.entry, ttl, value, error));
+            return Futures.map(lookup.entry.value, type::cast);
+        }
+        return Futures.map(deadline.bound(lookup.entry.value), type::cast);
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private Duration ttl(String url) {
+        if (disabled) {
+            return null;
+        }
+        var query = url.indexOf('?');
+        return ttls.get(query < 0 ? url : url.substring(0, query));
+    }
+
+    private Lookup lookup(Key key) {
+        synchronized (entries) {
+            var entry = entries.get(key);
+            if (entry != null && entry.isValid(System.nanoTime())) {
+                return new Lookup(entry, false);
+            }
+            var created = new Entry();
+            entries.put(key, created);
+            return new Lookup(created, true);
+        }
+    }
+
+    private void complete(Key key, Entry entry, Duration ttl, Object value, Throwable error) {
+        if (error != null || ttl.isZero()) {
+            synchronized (entries) {
+                entries.remove(key, entry);
+            }
+        }
+        if (error != null) {
+            entry.value.completeExceptionally(Futures.unwrap(error));
+
+        } else {
+            entry.expiresAt = System.nanoTime() + ttl.toNanos();
+            entry.value.complete(requireNonNull(value));
+        }
+    }
+}
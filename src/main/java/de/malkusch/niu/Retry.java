@@ -1,5 +1,6 @@
 package de.malkusch.niu;
 
+import dev.failsafe.ExecutionContext;
 import dev.failsafe.Failsafe;
 import dev.failsafe.FailsafeException;
 import dev.failsafe.FailsafeExecutor;
@@ -7,24 +8,60 @@ import dev.failsafe.RetryPolicy;
 
 import java.io.IOException;
 import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static java.util.Objects.requireNonNull;
+
+interface Retry {
+
+    /**
+     * @param delay
+     *            The delay before the first retry, doubling with each further
+     *            retry.
+     * @param maxDelay
+     *            Caps the doubling delay. A longer Retry-After isn't waited for.
+     * @param jitter
+     *            Randomly shortens each delay by up to this fraction, so that
+     *            clients which failed together don't retry together.
+     */
+    record Configuration(int retries, Duration delay, Duration maxDelay, double jitter) {
 
-interface Retry<T> {
+        static final Configuration DISABLED = new Configuration(0, Duration.ZERO);
 
-    record Configuration(int retries, Duration delay) {
+        public Configuration {
+            requireNonNull(delay);
+            requireNonNull(maxDelay);
+            if (retries < 0) {
+                throw new IllegalArgumentException("retries must not be negative");
+            }
+            if (delay.isNegative() || maxDelay.compareTo(delay) < 0) {
+                throw new IllegalArgumentException("delay must be between 0 and maxDelay");
+            }
+            if (jitter < 0 || jitter > 1) {
+                throw new IllegalArgumentException("jitter must be between 0 and 1");
+            }
+        }
 
-        static final Configuration DISABLED = new Configuration(0, Duration.ZERO);
+        /**
+         * A constant delay without jitter.
+         */
+        public Configuration(int retries, Duration delay) {
+            this(retries, delay, delay, 0);
+        }
 
         boolean isDisabled() {
             return this == DISABLED;
         }
     }
 
-    static <T> Retry<T> build(Configuration configuration) {
+    static Retry build(Configuration configuration) {
         if (configuration.isDisabled()) {
-            return new DisabledRetry<>();
+            return new DisabledRetry();
 
         } else {
-            return new FailSafeRetry<>(configuration);
+            return new FailSafeRetry(configuration);
         }
     }
 
@@ -33,38 +70,169 @@ interface Retry<T> {
         T execute() throws E1, E2;
     }
 
-    <E1 extends Throwable, E2 extends Throwable> T retry(Operation<T, E1, E2> operation) throws E1, E2;
+    default <T, E1 extends Throwable, E2 extends Throwable> T retry(Operation<T, E1, E2> operation) throws E1, E2 {
+        return retry(Deadline.NONE, operation);
+    }
+
+    /**
+     * Doesn't start a retry which the {@code deadline} can't cover, but fails
+     * with {@link DeadlineExceededException}.
+     */
+    <T, E1 extends Throwable, E2 extends Throwable> T retry(Deadline deadline, Operation<T, E1, E2> operation)
+            throws E1, E2;
+
+    @FunctionalInterface
+    interface AsyncOperation<T> {
+        CompletionStage<T> execute();
+    }
+
+    /**
+     * Retries without blocking. Delays between attempts are waited out on
+     * {@link Futures#SCHEDULER}.
+     */
+    default <T> CompletableFuture<T> retryAsync(AsyncOperation<T> operation) {
+        return retryAsync(Deadline.NONE, operation);
+    }
+
+    <T> CompletableFuture<T> retryAsync(Deadline deadline, AsyncOperation<T> operation);
 
-    final class DisabledRetry<T> implements Retry<T> {
+    final class DisabledRetry implements Retry {
 
         @Override
-        public <E1 extends Throwable, E2 extends Throwable> T retry(Operation<T, E1, E2> operation) throws E1, E2 {
+        public <T, E1 extends Throwable, E2 extends Throwable> T retry(Deadline deadline,
+                Operation<T, E1, E2> operation) throws E1, E2 {
+
             return operation.execute();
         }
+
+        @Override
+        public <T> CompletableFuture<T> retryAsync(Deadline deadline, AsyncOperation<T> operation) {
+            return Futures.map(operation.execute(), it -> it);
+        }
     }
 
-    final class FailSafeRetry<T> implements Retry<T> {
+    /**
+     * Retries transport errors and server errors. Client errors are final,
+     * except for 408 and 429, and so are shed calls. Retries are bounded by
+     * {@link RetryBudget#PROCESS}.
+     */
+    final class FailSafeRetry implements Retry {
 
-        private final FailsafeExecutor<T> failsafe;
+        private final Configuration configuration;
+        private final RetryBudget budget;
 
         FailSafeRetry(Configuration configuration) {
-            failsafe = Failsafe.with( //
-                    RetryPolicy.<T>builder() //
-                            .handle(IOException.class) //
-                            .withMaxRetries(configuration.retries()) //
-                            .withDelay(configuration.delay()) //
-                            .build());
+            this(configuration, RetryBudget.PROCESS);
+        }
+
+        FailSafeRetry(Configuration configuration, RetryBudget budget) {
+            this.configuration = configuration;
+            this.budget = requireNonNull(budget);
+        }
+
+        /**
+         * The policy of one call. Failsafe computes the delay before it asks
+         * the abort condition, so the delay function draws the delay and
+         * decides right there whether the deadline and the budget cover a
+         * retry after it. The abort condition only reads that decision. So the
+         * delay which the deadline is checked against is the one that is
+         * slept, a retry which the deadline can't cover is aborted right away
+         * instead of sleeping into the deadline, and only retries which
+         * actually follow withdraw from the budget.
+         */
+        private final class CallPolicy {
+
+            private final Deadline deadline;
+            private final FailsafeExecutor<Object> failsafe;
+            private volatile boolean abort;
+            private volatile boolean exceeded;
+
+            CallPolicy(Deadline deadline) {
+                this.deadline = deadline;
+                failsafe = Failsafe.with(RetryPolicy.builder() //
+                        .handleIf(FailSafeRetry.this::isRetryable) //
+                        .withMaxRetries(configuration.retries()) //
+                        .withDelayFn(this::delay) //
+                        .abortIf((result, failure) -> abort) //
+                        .build()).with(Futures.SCHEDULER);
+            }
+
+            private Duration delay(ExecutionContext<Object> context) {
+                var attempts = context.getAttemptCount();
+                if (attempts > configuration.retries()) {
+                    // No retry follows
+                    return Duration.ZERO;
+                }
+                var delay = FailSafeRetry.this.delay(attempts, context.getLastException());
+                if (!deadline.covers(delay)) {
+                    exceeded = true;
+                    abort = true;
+
+                } else {
+                    abort = !budget.tryWithdraw();
+                }
+                return delay;
+            }
+
+            Throwable failure(Throwable failure) {
+                return exceeded ? deadline.exceeded(failure) : failure;
+            }
+        }
+
+        private boolean isRetryable(Throwable failure) {
+            if (failure instanceof DeadlineExceededException || failure instanceof OverloadedException) {
+                return false;
+            }
+            if (failure instanceof HttpStatusException e) {
+                var retryAfter = e.retryAfter();
+                if (retryAfter.isPresent() && retryAfter.get().compareTo(configuration.maxDelay()) > 0) {
+                    return false;
+                }
+                return e.isRetryable();
+            }
+            return failure instanceof IOException;
+        }
+
+        Duration delay(int attempts, Throwable failure) {
+            if (failure instanceof HttpStatusException e && e.retryAfter().isPresent()) {
+                return e.retryAfter().get();
+            }
+            var delay = configuration.delay().toNanos();
+            var max = configuration.maxDelay().toNanos();
+            for (int i = 1; i < attempts && delay < max; i++) {
+                delay = Math.min(max, delay * 2);
+            }
+            var jitter = configuration.jitter() * ThreadLocalRandom.current().nextDouble();
+            return Duration.ofNanos((long) (delay * (1 - jitter)));
         }
 
         @Override
-        public <E1 extends Throwable, E2 extends Throwable> T retry(Operation<T, E1, E2> operation) throws E1, E2 {
+        public <T, E1 extends Throwable, E2 extends Throwable> T retry(Deadline deadline,
+                Operation<T, E1, E2> operation) throws E1, E2 {
+
+            budget.deposit();
+            var policy = new CallPolicy(deadline);
             try {
-                return failsafe.get(operation::execute);
+                return policy.failsafe.get(operation::execute);
 
             } catch (FailsafeException e) {
-                var cause = e.getCause();
-                throw (E1) cause;
+                throw (E1) policy.failure(e.getCause());
             }
         }
+
+        @Override
+        public <T> CompletableFuture<T> retryAsync(Deadline deadline, AsyncOperation<T> operation) {
+            budget.deposit();
+            var policy = new CallPolicy(deadline);
+            var result = new CompletableFuture<T>();
+            policy.failsafe.getStageAsync(operation::execute).whenComplete((value, error) -> {
+                if (error != null) {
+                    result.completeExceptionally(policy.failure(Futures.unwrap(error)));
+                } else {
+                    result.complete(value);
+                }
+            });
+            return result;
+        }
     }
 }
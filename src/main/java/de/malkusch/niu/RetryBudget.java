@@ -0,0 +1,66 @@
+package de.malkusch.niu;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits retries to a share of the requests, so that retries can't multiply
+ * the load during an outage. Every request deposits {@code ratio} of a retry,
+ * every retry withdraws one. On top {@code minPerSecond} retries are always
+ * available, so that a quiet process can still retry.
+ */
+final class RetryBudget {
+
+    /**
+     * Shared by all clients of the process.
+     */
+    static final RetryBudget PROCESS = new RetryBudget(0.2, 10, 100);
+
+    private static final long UNIT = 1000;
+
+    private final long deposit;
+    private final long minPerSecond;
+    private final long capacity;
+    private final AtomicLong balance;
+    private final AtomicLong refilled = new AtomicLong(System.nanoTime());
+
+    RetryBudget(double ratio, int minPerSecond, int capacity) {
+        if (ratio < 0 || minPerSecond < 0 || capacity < 1) {
+            throw new IllegalArgumentException("Invalid retry budget");
+        }
+        this.deposit = (long) (ratio * UNIT);
+        this.minPerSecond = minPerSecond * UNIT;
+        this.capacity = capacity * UNIT;
+        this.balance = new AtomicLong(this.capacity);
+    }
+
+    void deposit() {
+        add(deposit);
+    }
+
+    boolean tryWithdraw() {
+        refill();
+        while (true) {
+            var current = balance.get();
+            if (current < UNIT) {
+                return false;
+            }
+            if (balance.compareAndSet(current, current - UNIT)) {
+                return true;
+            }
+        }
+    }
+
+    private void refill() {
+        var now = System.nanoTime();
+        var last = refilled.get();
+        var refill = (now - last) * minPerSecond / TimeUnit.SECONDS.toNanos(1);
+        if (refill > 0 && refilled.compareAndSet(last, now)) {
+            add(refill);
+        }
+    }
+
+    private void add(long amount) {
+        balance.accumulateAndGet(amount, (current, added) -> Math.min(capacity, current + added));
+    }
+}
@@ -0,0 +1,224 @@
+package de.malkusch.niu;
+
+import static java.util.Objects.requireNonNull;
+import static tools.jackson.core.JsonToken.START_OBJECT;
+import static tools.jackson.core.JsonToken.VALUE_NULL;
+
+import java.time.Instant;
+
+import de.malkusch.niu.Niu.BatteryInfo;
+import de.malkusch.niu.Niu.VehicleInfo;
+import tools.jackson.core.JsonParser;
+import tools.jackson.databind.DeserializationContext;
+import tools.jackson.databind.ValueDeserializer;
+import tools.jackson.databind.module.SimpleModule;
+
+/**
+ * Decodes index_info and battery_info straight from the token stream into
+ * {@link VehicleInfo} and {@link BatteryInfo}, without an intermediate object
+ * graph of the response.
+ * <p>
+ * Scalars are coerced like the data binding did: missing and {@code null}
+ * values are 0 or {@code false}, and numbers in strings are numbers. A missing
+ * object fails with a {@link NullPointerException}, except for a missing
+ * {@code data.batteries} in index_info, which decodes to a
+ * {@link VehicleInfo} without {@link VehicleInfo#battery()}.
+ */
+final class TelemetryDecoder {
+
+    private TelemetryDecoder() {
+    }
+
+    static SimpleModule module() {
+        return new SimpleModule("niu-telemetry") //
+                .addDeserializer(VehicleInfo.class, new VehicleInfoDeserializer()) //
+                .addDeserializer(BatteryInfo.class, new BatteryInfoDeserializer());
+    }
+
+    private static final class VehicleInfoDeserializer extends ValueDeserializer<VehicleInfo> {
+
+        @Override
+        public VehicleInfo deserialize(JsonParser parser, DeserializationContext context) {
+            if (!parser.isExpectedStartObjectToken()) {
+                return context.reportInputMismatch(this, "Expected index_info object");
+            }
+            var status = 0;
+            Vehicle vehicle = null;
+            for (var name = parser.nextName(); name != null; name = parser.nextName()) {
+                parser.nextToken();
+                switch (name) {
+                case "status" -> status = parser.getValueAsInt();
+                case "data" -> vehicle = isObject(parser) ? vehicle(parser) : null;
+                default -> parser.skipChildren();
+                }
+            }
+            requireNonNull(vehicle, "data is missing");
+
+            VehicleInfo.Battery battery = null;
+            if (vehicle.hasBatteries) {
+                requireNonNull(vehicle.battery, "data.batteries.compartmentA is missing");
+                battery = new VehicleInfo.Battery(vehicle.isCharging, vehicle.battery.charge, vehicle.battery.grade);
+            }
+            requireNonNull(vehicle.position, "data.postion is missing");
+            return new VehicleInfo(battery, vehicle.position, vehicle.nowSpeed, vehicle.shakingValue,
+                    vehicle.centreCtrlBattery, vehicle.gps, timestamp(vehicle.gpsTimestamp), vehicle.gsm,
+                    timestamp(vehicle.infoTimestamp), status, vehicle.leftTime, vehicle.isConnected,
+                    vehicle.estimatedMileage, vehicle.ss_online_sta, timestamp(vehicle.time));
+        }
+
+        private static Vehicle vehicle(JsonParser parser) {
+            var vehicle = new Vehicle();
+            for (var name = parser.nextName(); name != null; name = parser.nextName()) {
+                parser.nextToken();
+                switch (name) {
+                case "batteries" -> {
+                    vehicle.hasBatteries = isObject(parser);
+                    vehicle.battery = vehicle.hasBatteries ? compartmentA(parser) : null;
+                }
+                case "isCharging" -> vehicle.isCharging = parser.getValueAsBoolean();
+                case "nowSpeed" -> vehicle.nowSpeed = parser.getValueAsInt();
+                case "shakingValue" -> vehicle.shakingValue = parser.getValueAsInt();
+                case "postion" -> vehicle.position = isObject(parser) ? position(parser) : null;
+                case "centreCtrlBattery" -> vehicle.centreCtrlBattery = parser.getValueAsInt();
+                case "gps" -> vehicle.gps = parser.getValueAsInt();
+                case "gpsTimestamp" -> vehicle.gpsTimestamp = parser.getValueAsLong();
+                case "gsm" -> vehicle.gsm = parser.getValueAsInt();
+                case "infoTimestamp" -> vehicle.infoTimestamp = parser.getValueAsLong();
+                case "leftTime" -> vehicle.leftTime = parser.getValueAsDouble();
+                case "isConnected" -> vehicle.isConnected = parser.getValueAsBoolean();
+                case "estimatedMileage" -> vehicle.estimatedMileage = parser.getValueAsInt();
+                case "ss_online_sta" -> vehicle.ss_online_sta = parser.getValueAsInt();
+                case "time" -> vehicle.time = parser.getValueAsLong();
+                default -> parser.skipChildren();
+                }
+            }
+            return vehicle;
+        }
+
+        private static VehicleInfo.Position position(JsonParser parser) {
+            var lat = 0.0;
+            var lng = 0.0;
+            for (var name = parser.nextName(); name != null; name = parser.nextName()) {
+                parser.nextToken();
+                switch (name) {
+                case "lat" -> lat = parser.getValueAsDouble();
+                case "lng" -> lng = parser.getValueAsDouble();
+                default -> parser.skipChildren();
+                }
+            }
+            return new VehicleInfo.Position(lat, lng);
+        }
+    }
+
+    private static final class BatteryInfoDeserializer extends ValueDeserializer<BatteryInfo> {
+
+        @Override
+        public BatteryInfo deserialize(JsonParser parser, DeserializationContext context) {
+            if (!parser.isExpectedStartObjectToken()) {
+                return context.reportInputMismatch(this, "Expected battery_info object");
+            }
+            var status = 0;
+            var isCharging = false;
+            Battery battery = null;
+            var hasData = false;
+            for (var name = parser.nextName(); name != null; name = parser.nextName()) {
+                parser.nextToken();
+                switch (name) {
+                case "status" -> status = parser.getValueAsInt();
+                case "data" -> {
+                    hasData = isObject(parser);
+                    for (var field = hasData ? parser.nextName() : null; field != null; field = parser
+                            .nextName()) {
+                        parser.nextToken();
+                        switch (field) {
+                        case "isCharging" -> isCharging = parser.getValueAsBoolean();
+                        case "batteries" -> battery = isObject(parser) ? compartmentA(parser) : null;
+                        default -> parser.skipChildren();
+                        }
+                    }
+                }
+                default -> parser.skipChildren();
+                }
+            }
+            if (!hasData) {
+                throw new NullPointerException("data is missing");
+            }
+            requireNonNull(battery, "data.batteries.compartmentA is missing");
+            return new BatteryInfo(isCharging, battery.charge, battery.temperature, battery.grade, status);
+        }
+    }
+
+    /**
+     * The mutable fields of index_info's data object, which are copied into
+     * the {@link VehicleInfo} after the whole object was read.
+     */
+    private static final class Vehicle {
+        boolean hasBatteries;
+        Battery battery;
+        boolean isCharging;
+        int nowSpeed;
+        int shakingValue;
+        VehicleInfo.Position position;
+        int centreCtrlBattery;
+        int gps;
+        long gpsTimestamp;
+        int gsm;
+        long infoTimestamp;
+        double leftTime;
+        boolean isConnected;
+        int estimatedMileage;
+        int ss_online_sta;
+        long time;
+    }
+
+    private static final class Battery {
+        int charge;
+        int temperature;
+        double grade;
+    }
+
+    /**
+     * Reads a batteries object and returns its compartmentA, or {@code null}
+     * if it's missing.
+     */
+    private static Battery compartmentA(JsonParser parser) {
+        Battery battery = null;
+        for (var name = parser.nextName(); name != null; name = parser.nextName()) {
+            parser.nextToken();
+            if (name.equals("compartmentA") && isObject(parser)) {
+                battery = new Battery();
+                for (var field = parser.nextName(); field != null; field = parser.nextName()) {
+                    parser.nextToken();
+                    switch (field) {
+                    case "batteryCharging" -> battery.charge = parser.getValueAsInt();
+                    case "temperature" -> battery.temperature = parser.getValueAsInt();
+                    case "gradeBattery" -> battery.grade = parser.getValueAsDouble();
+                    default -> parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return battery;
+    }
+
+    /**
+     * @return {@code true} at the start of an object, {@code false} for
+     *         {@code null}, which is treated like a missing object
+     */
+    private static boolean isObject(JsonParser parser) {
+        var token = parser.currentToken();
+        if (token == START_OBJECT) {
+            return true;
+        }
+        if (token != VALUE_NULL) {
+            parser.skipChildren();
+        }
+        return false;
+    }
+
+    private static Instant timestamp(long timestamp) {
+        return Instant.ofEpochMilli(timestamp);
+    }
+}
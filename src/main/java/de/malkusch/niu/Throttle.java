@@ -0,0 +1,157 @@
+package de.malkusch.niu;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs asynchronous tasks with at most {@code limit} of them in flight. Excess
+ * tasks are queued and started as running ones complete, no thread is blocked
+ * while waiting.
+ */
+final class Throttle {
+
+    private final int limit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger draining = new AtomicInteger();
+
+    Throttle(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        this.limit = limit;
+    }
+
+    <T> CompletableFuture<T> submit(Supplier<? extends CompletableFuture<T>> task) {
+        var result = new CompletableFuture<T>();
+        queue.add(() -> {
+            CompletableFuture<T> future;
+            try {
+                future = task.get();
+
+            } catch (Throwable e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            future.whenComplete((value, error) -> {
+                release();
+                if (error != null) {
+                    result.completeExceptionally(Futures.unwrap(error));
+                } else {
+                    result.complete(value);
+                }
+            });
+        });
+        drain();
+        return result;
+    }
+
+    /**
+     * Completes when a slot is free. The slot must be given back with
+     * {@link #release()}.
+     */
+    CompletableFuture<Void> acquire() {
+        var acquired = new CompletableFuture<Void>();
+        queue.add(() -> acquired.complete(null));
+        drain();
+        return acquired;
+    }
+
+    /**
+     * Blocks until a slot is free. The slot must be given back with
+     * {@link #release()}.
+     */
+    void acquireInterruptibly() throws InterruptedException {
+        var acquired = acquire();
+        try {
+            acquired.get();
+
+        } catch (InterruptedException e) {
+            // A slot that is granted after all is given back
+            acquired.thenRun(this::release);
+            throw e;
+
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Waits at most {@code timeout} for a free slot. The slot must be given
+     * back with {@link #release()}.
+     *
+     * @return {@code false} if no slot was free in time
+     */
+    boolean tryAcquire(Duration timeout) throws InterruptedException {
+        var acquired = acquire();
+        try {
+            acquired.get(timeout.toNanos(), NANOSECONDS);
+            return true;
+
+        } catch (InterruptedException e) {
+            acquired.thenRun(this::release);
+            throw e;
+
+        } catch (TimeoutException e) {
+            acquired.thenRun(this::release);
+            return false;
+
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+
+    void release() {
+        inFlight.decrementAndGet();
+        drain();
+    }
+
+    /**
+     * Starts queued tasks while slots are free. A task that completes right
+     * away releases its slot from within the loop. That release only asks the
+     * running loop for another pass instead of draining recursively, so that
+     * the stack doesn't grow with the queue.
+     */
+    private void drain() {
+        if (draining.getAndIncrement() != 0) {
+            return;
+        }
+        var missed = 1;
+        do {
+            startQueued();
+            missed = draining.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void startQueued() {
+        while (true) {
+            var current = inFlight.get();
+            if (current >= limit) {
+                return;
+            }
+            if (!inFlight.compareAndSet(current, current + 1)) {
+                continue;
+            }
+            var next = queue.poll();
+            if (next == null) {
+                inFlight.decrementAndGet();
+                if (queue.isEmpty()) {
+                    return;
+                }
+                continue;
+            }
+            next.run();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package de.malkusch.niu;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Persists the access token across restarts, so that a new {@link Niu} can
+ * skip the login. The store is only a cache, failing to load or store a token
+ * results in a login.
+ */
+public interface TokenStore {
+
+    record StoredToken(String value, Instant expiresAt, String refreshToken, Instant refreshTokenExpiresAt) {
+    }
+
+    Optional<StoredToken> load(String account) throws IOException;
+
+    void store(String account, StoredToken token) throws IOException;
+
+    TokenStore NONE = new TokenStore() {
+
+        @Override
+        public Optional<StoredToken> load(String account) {
+            return Optional.empty();
+        }
+
+        @Override
+        public void store(String account, StoredToken token) {
+        }
+    };
+}
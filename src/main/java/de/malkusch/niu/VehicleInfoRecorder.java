@@ -0,0 +1,309 @@
+package de.malkusch.niu;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Objects.requireNonNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.time.Instant;
+
+import de.malkusch.niu.Niu.VehicleInfo;
+
+/**
+ * Records {@link VehicleInfo} samples into a memory mapped segment file with
+ * fixed-width records. Samples can't be changed or removed, a full segment
+ * must be replaced by a new file.
+ *
+ * <p>
+ * Coordinates are stored with a precision of 1e-7 degrees, timestamps with
+ * millisecond precision.
+ */
+public final class VehicleInfoRecorder implements Closeable {
+
+    private static final int MAGIC = 0x4e495552;
+    private static final int VERSION = 1;
+
+    private static final int HEADER = 16;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int COUNT_OFFSET = 8;
+
+    static final int MAX_SERIAL_NUMBER = 31;
+    private static final double COORDINATE_SCALE = 1e7;
+
+    private static final int SERIAL_NUMBER = 0;
+    private static final int TIME = 32;
+    private static final int GPS_TIMESTAMP = 40;
+    private static final int GSM_TIMESTAMP = 48;
+    private static final int GRADE = 56;
+    private static final int LEFT_TIME = 64;
+    private static final int LAT = 72;
+    private static final int LNG = 76;
+    private static final int CHARGE = 80;
+    private static final int NOW_SPEED = 84;
+    private static final int SHAKING_VALUE = 88;
+    private static final int ECU_BATTERY_CHARGE = 92;
+    private static final int GPS = 96;
+    private static final int GSM = 100;
+    private static final int STATUS = 104;
+    private static final int ESTIMATED_MILEAGE = 108;
+    private static final int SS_ONLINE_STA = 112;
+    private static final int FLAGS = 116;
+    static final int RECORD = 120;
+
+    /**
+     * A mapping is limited to 2GB.
+     */
+    public static final int MAX_CAPACITY = (Integer.MAX_VALUE - HEADER) / RECORD;
+
+    private static final byte CHARGING = 1;
+    private static final byte CONNECTED = 2;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private volatile int count;
+
+    /**
+     * Opens the segment, or creates it with room for {@code capacity}
+     * samples. An existing segment keeps its capacity.
+     */
+    public VehicleInfoRecorder(Path segment, int capacity) throws IOException {
+        if (capacity < 1 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("capacity must be between 1 and " + MAX_CAPACITY);
+        }
+        channel = FileChannel.open(segment, CREATE, READ, WRITE);
+        try {
+            var existing = channel.size();
+            if (existing > 0) {
+                capacity = (int) ((existing - HEADER) / RECORD);
+            }
+            this.capacity = capacity;
+            buffer = channel.map(MapMode.READ_WRITE, 0, HEADER + (long) capacity * RECORD);
+
+            if (existing == 0) {
+                buffer.putInt(MAGIC_OFFSET, MAGIC);
+                buffer.putInt(VERSION_OFFSET, VERSION);
+                buffer.putLong(COUNT_OFFSET, 0);
+
+            } else if (buffer.getInt(MAGIC_OFFSET) != MAGIC || buffer.getInt(VERSION_OFFSET) != VERSION) {
+                throw new IOException(segment + " is not a recorder segment");
+            }
+            count = (int) buffer.getLong(COUNT_OFFSET);
+
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public synchronized void append(String serialNumber, VehicleInfo info) throws IOException {
+        var serial = serialNumber.getBytes(UTF_8);
+        if (serial.length > MAX_SERIAL_NUMBER) {
+            throw new IllegalArgumentException("serialNumber is too long: " + serialNumber);
+        }
+        var count = this.count;
+        if (count >= capacity) {
+            throw new IOException("Segment is full");
+        }
+        var offset = HEADER + count * RECORD;
+
+        buffer.put(offset + SERIAL_NUMBER, (byte) serial.length);
+        buffer.put(offset + SERIAL_NUMBER + 1, serial);
+        buffer.putLong(offset + TIME, info.time().toEpochMilli());
+        buffer.putLong(offset + GPS_TIMESTAMP, info.gpsTimestamp().toEpochMilli());
+        buffer.putLong(offset + GSM_TIMESTAMP, info.gsmTimestamp().toEpochMilli());
+        buffer.putDouble(offset + GRADE, info.battery().grade());
+        buffer.putDouble(offset + LEFT_TIME, info.leftTime());
+        buffer.putInt(offset + LAT, (int) Math.round(info.position().lat() * COORDINATE_SCALE));
+        buffer.putInt(offset + LNG, (int) Math.round(info.position().lng() * COORDINATE_SCALE));
+        buffer.putInt(offset + CHARGE, info.battery().charge());
+        buffer.putInt(offset + NOW_SPEED, info.nowSpeed());
+        buffer.putInt(offset + SHAKING_VALUE, info.shakingValue());
+        buffer.putInt(offset + ECU_BATTERY_CHARGE, info.ecuBatteryCharge());
+        buffer.putInt(offset + GPS, info.gps());
+        buffer.putInt(offset + GSM, info.gsm());
+        buffer.putInt(offset + STATUS, info.status());
+        buffer.putInt(offset + ESTIMATED_MILEAGE, info.estimatedMileage());
+        buffer.putInt(offset + SS_ONLINE_STA, info.ss_online_sta());
+        buffer.put(offset + FLAGS,
+                (byte) ((info.battery().isCharging() ? CHARGING : 0) | (info.isConnected() ? CONNECTED : 0)));
+
+        // The count is published last, so that a reader never sees a partial record
+        buffer.putLong(COUNT_OFFSET, count + 1);
+        this.count = count + 1;
+    }
+
+    /**
+     * Iterates over the samples of {@code serialNumber} with a time in
+     * [{@code from}, {@code to}), in the order they were appended. Samples
+     * appended after this call are not included.
+     */
+    public Cursor scan(String serialNumber, Instant from, Instant to) {
+        var serial = serialNumber.getBytes(UTF_8);
+        return new Cursor(buffer.duplicate(), serial, epochMilli(from), epochMilli(to), count);
+    }
+
+    private static long epochMilli(Instant instant) {
+        try {
+            return instant.toEpochMilli();
+
+        } catch (ArithmeticException e) {
+            return instant.isBefore(Instant.EPOCH) ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Flushes the segment to the storage device.
+     */
+    public void flush() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+
+    /**
+     * Reads the current sample without allocating, only
+     * {@link #vehicleInfo()} creates objects.
+     */
+    public static final class Cursor {
+
+        private final ByteBuffer buffer;
+        private final byte[] serialNumber;
+        private final long from;
+        private final long to;
+        private final int end;
+        private int index = -1;
+        private int offset;
+
+        private Cursor(ByteBuffer buffer, byte[] serialNumber, long from, long to, int end) {
+            this.buffer = buffer;
+            this.serialNumber = requireNonNull(serialNumber);
+            this.from = from;
+            this.to = to;
+            this.end = end;
+        }
+
+        public boolean next() {
+            while (++index < end) {
+                offset = HEADER + index * RECORD;
+                var time = buffer.getLong(offset + TIME);
+                if (time >= from && time < to && isSerialNumber()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean isSerialNumber() {
+            if (buffer.get(offset + SERIAL_NUMBER) != serialNumber.length) {
+                return false;
+            }
+            for (int i = 0; i < serialNumber.length; i++) {
+                if (buffer.get(offset + SERIAL_NUMBER + 1 + i) != serialNumber[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public long time() {
+            return buffer.getLong(offset + TIME);
+        }
+
+        public long gpsTimestamp() {
+            return buffer.getLong(offset + GPS_TIMESTAMP);
+        }
+
+        public long gsmTimestamp() {
+            return buffer.getLong(offset + GSM_TIMESTAMP);
+        }
+
+        public double lat() {
+            return buffer.getInt(offset + LAT) / COORDINATE_SCALE;
+        }
+
+        public double lng() {
+            return buffer.getInt(offset + LNG) / COORDINATE_SCALE;
+        }
+
+        public boolean isCharging() {
+            return (buffer.get(offset + FLAGS) & CHARGING) != 0;
+        }
+
+        public boolean isConnected() {
+            return (buffer.get(offset + FLAGS) & CONNECTED) != 0;
+        }
+
+        public int charge() {
+            return buffer.getInt(offset + CHARGE);
+        }
+
+        public double grade() {
+            return buffer.getDouble(offset + GRADE);
+        }
+
+        public int nowSpeed() {
+            return buffer.getInt(offset + NOW_SPEED);
+        }
+
+        public int shakingValue() {
+            return buffer.getInt(offset + SHAKING_VALUE);
+        }
+
+        public int ecuBatteryCharge() {
+            return buffer.getInt(offset + ECU_BATTERY_CHARGE);
+        }
+
+        public int gps() {
+            return buffer.getInt(offset + GPS);
+        }
+
+        public int gsm() {
+            return buffer.getInt(offset + GSM);
+        }
+
+        public int status() {
+            return buffer.getInt(offset + STATUS);
+        }
+
+        public double leftTime() {
+            return buffer.getDouble(offset + LEFT_TIME);
+        }
+
+        public int estimatedMileage() {
+            return buffer.getInt(offset + ESTIMATED_MILEAGE);
+        }
+
+        public int ss_online_sta() {
+            return buffer.getInt(offset + SS_ONLINE_STA);
+        }
+
+        public VehicleInfo vehicleInfo() {
+            return new VehicleInfo(new VehicleInfo.Battery(isCharging(), charge(), grade()),
+                    new VehicleInfo.Position(lat(), lng()), nowSpeed(), shakingValue(), ecuBatteryCharge(), gps(),
+                    Instant.ofEpochMilli(gpsTimestamp()), gsm(), Instant.ofEpochMilli(gsmTimestamp()), status(),
+                    leftTime(), isConnected(), estimatedMileage(), ss_online_sta(), Instant.ofEpochMilli(time()));
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package de.malkusch.niu;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+import de.malkusch.niu.Niu.VehicleInfo;
+import de.malkusch.niu.Niu.Watch;
+import de.malkusch.niu.Niu.WatchListener;
+
+/**
+ * Polls one vehicle on a scheduler, by default {@link Futures#SCHEDULER}. The
+ * scheduler thread only starts the non blocking requests, so that many
+ * watchers share it.
+ */
+final class Watcher implements Watch {
+
+    /**
+     * @param active
+     *            Polling interval while the vehicle is moving or charging.
+     * @param connected
+     *            Polling interval while the vehicle is parked, but connected.
+     * @param idle
+     *            Polling interval while the vehicle is parked and disconnected.
+     */
+    record Intervals(Duration active, Duration connected, Duration idle) {
+
+        static final Intervals DEFAULT = new Intervals(Duration.ofSeconds(10), Duration.ofMinutes(1),
+                Duration.ofMinutes(5));
+
+        Intervals {
+            assertPositive(active);
+            assertPositive(connected);
+            assertPositive(idle);
+        }
+
+        private static void assertPositive(Duration interval) {
+            if (interval.isNegative() || interval.isZero()) {
+                throw new IllegalArgumentException("interval must be positive");
+            }
+        }
+
+        Duration interval(VehicleInfo info) {
+            if (info == null || info.nowSpeed() > 0 || info.battery().isCharging()) {
+                return active;
+            }
+            return info.isConnected() ? connected : idle;
+        }
+    }
+
+    /**
+     * Spreads the polls of vehicles which were watched at the same time.
+     */
+    private static final double JITTER = 0.1;
+
+    private final String serialNumber;
+    private final Function<String, CompletableFuture<VehicleInfo>> fetch;
+    private final WatchListener listener;
+    private final Intervals intervals;
+    private final ScheduledExecutorService scheduler;
+
+    private final Object lock = new Object();
+    private VehicleInfo last;
+    private ScheduledFuture<?> scheduled;
+    private boolean closed;
+
+    Watcher(String serialNumber, Function<String, CompletableFuture<VehicleInfo>> fetch, WatchListener listener,
+            Intervals intervals) {
+
+        this(serialNumber, fetch, listener, intervals, Futures.SCHEDULER);
+    }
+
+    Watcher(String serialNumber, Function<String, CompletableFuture<VehicleInfo>> fetch, WatchListener listener,
+            Intervals intervals, ScheduledExecutorService scheduler) {
+
+        this.serialNumber = requireNonNull(serialNumber);
+        this.fetch = requireNonNull(fetch);
+        this.listener = requireNonNull(listener);
+        this.intervals = requireNonNull(intervals);
+        this.scheduler = requireNonNull(scheduler);
+    }
+
+    Watcher start() {
+        schedule(Duration.ZERO);
+        return this;
+    }
+
+    private void schedule(Duration interval) {
+        var jitter = 1 + JITTER * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+        var delay = (long) (interval.toNanos() * jitter);
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            scheduled = scheduler.schedule(this::poll, delay, NANOSECONDS);
+        }
+    }
+
+    private void poll() {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+        }
+        CompletableFuture<VehicleInfo> info;
+        try {
+            info = fetch.apply(serialNumber);
+
+        } catch (RuntimeException e) {
+            info = CompletableFuture.failedFuture(e);
+        }
+        info.whenComplete((it, error) -> {
+            VehicleInfo previous;
+            synchronized (lock) {
+                if (closed) {
+                    return;
+                }
+                previous = last;
+                if (error == null) {
+                    last = it;
+                }
+            }
+            try {
+                if (error != null) {
+                    var cause = Futures.unwrap(error);
+                    listener.onFailure(cause instanceof IOException e ? e : new IOException(cause));
+
+                } else if (!it.equals(previous)) {
+                    listener.onChange(it);
+                }
+
+            } catch (RuntimeException e) {
+                // A broken listener must not stop the watch
+            }
+            schedule(intervals.interval(error == null ? it : previous));
+        });
+    }
+
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+        }
+    }
+}
@@ -1,11 +1,40 @@
 package de.malkusch.niu;
 
+import static de.malkusch.niu.Retry.Configuration.DISABLED;
 import static de.malkusch.niu.Tests.authentication;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.malkusch.niu.Authentication.Token;
+import de.malkusch.niu.TokenStore.StoredToken;
 
 public class AuthenticationTest {
 
@@ -22,4 +51,163 @@ public class AuthenticationTest {
         var authentication = authentication(expired, Instant.parse("2022-01-01T00:00:00Z"));
         assertEquals(expired, authentication.token().value());
     }
+
+    @Test
+    public void concurrentRefreshShouldLoginOnce() throws Exception {
+        var expired = "expired";
+        var httpClient = mock(HttpClient.class);
+        var authentication = authentication(httpClient, expired, Instant.parse("2022-01-01T00:00:00Z"),
+                Duration.ofMillis(500), Duration.ofMillis(200));
+        Thread.sleep(600);
+
+        var start = new CountDownLatch(1);
+        var executor = Executors.newFixedThreadPool(10);
+        try {
+            var tokens = new ArrayList<Future<Token>>();
+            for (var i = 0; i < 10; i++) {
+                tokens.add(executor.submit(() -> {
+                    start.await();
+                    return authentication.token();
+                }));
+            }
+            start.countDown();
+            for (var token : tokens) {
+                assertEquals(expired, token.get().value());
+            }
+
+        } finally {
+            executor.shutdown();
+        }
+        verify(httpClient, times(2)).send(any(), any());
+    }
+
+    @Test
+    public void waiterShouldRefreshAgainWhenOthersDeadlineRanOut() throws Exception {
+        var httpClient = mock(HttpClient.class);
+        when(httpClient.connectTimeout()).thenReturn(Optional.of(Duration.ofSeconds(10)));
+        var login = Files.readString(Paths.get(AuthenticationTest.class.getResource("login.json").toURI()))
+                .replace("{{access_token}}", "any")
+                .replace("{{token_expires_in}}", Long.toString(Instant.parse("2052-01-01T00:00:00Z").getEpochSecond()));
+        var response = mock(HttpResponse.class);
+        when(response.body()).thenReturn(login.getBytes(UTF_8));
+        when(response.statusCode()).thenReturn(200);
+        when(httpClient.sendAsync(any(HttpRequest.class), any(BodyHandler.class)))
+                .thenReturn(CompletableFuture.completedFuture(response));
+        var transport = new NiuTransport(httpClient, NiuTransport.newMapper(), 1, false);
+        var client = new Client(transport, Retry.build(DISABLED), "Any", ResponseCache.DISABLED, NiuListener.NONE,
+                Fingerprints.DISABLED, RateLimiter.DISABLED, Hedging.DISABLED, ConcurrencyLimiter.DISABLED);
+        var authentication = new Authentication("any_account", "any_pwd", "49", Duration.ofSeconds(10),
+                Authentication.NO_BACKGROUND_REFRESH, TokenStore.NONE, client);
+
+        // The login waits for the throttle until the first caller's deadline ran out
+        transport.logins().acquireInterruptibly();
+        var impatient = authentication.tokenAsync(Deadline.after(Duration.ofMillis(50)));
+        var patient = authentication.tokenAsync();
+        var e = assertThrows(ExecutionException.class, impatient::get);
+        assertInstanceOf(DeadlineExceededException.class, e.getCause());
+        transport.logins().release();
+
+        assertEquals("any", patient.get().value());
+        verify(httpClient, times(1)).sendAsync(any(), any());
+    }
+
+    @Test
+    public void validStoredTokenShouldSkipLogin() throws Exception {
+        var httpClient = mock(HttpClient.class);
+        when(httpClient.connectTimeout()).thenReturn(Optional.of(Duration.ofMillis(10)));
+        var client = new Client(httpClient, Retry.build(DISABLED), "Any");
+        var stored = new StoredToken("stored", Instant.parse("2052-01-01T00:00:00Z"), null, null);
+        var store = new TokenStore() {
+
+            @Override
+            public Optional<StoredToken> load(String account) {
+                return Optional.of(stored);
+            }
+
+            @Override
+            public void store(String account, StoredToken token) {
+            }
+        };
+
+        var authentication = new Authentication("any_account", "any_pwd", "49", Duration.ofSeconds(10),
+                Authentication.NO_BACKGROUND_REFRESH, store, client);
+
+        assertEquals("stored", authentication.token().value());
+        verify(httpClient, never()).send(any(), any());
+    }
+
+    @Test
+    public void unauthorizedShouldRenewTokenAndReplayOnce() throws Exception {
+        var httpClient = mock(HttpClient.class);
+        var authentication = authentication(httpClient, "valid", Instant.parse("2052-01-01T00:00:00Z"),
+                Duration.ofSeconds(10), Duration.ZERO);
+        var calls = new AtomicInteger();
+
+        var response = authentication.authenticated(token -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new HttpStatusException("Unauthorized", 401, null);
+            }
+            return token.value();
+        });
+
+        assertEquals("valid", response);
+        assertEquals(2, calls.get());
+        verify(httpClient, times(2)).send(any(), any());
+    }
+
+    @Test
+    public void repeatedUnauthorizedShouldFail() throws Exception {
+        var httpClient = mock(HttpClient.class);
+        var authentication = authentication(httpClient, "valid", Instant.parse("2052-01-01T00:00:00Z"),
+                Duration.ofSeconds(10), Duration.ZERO);
+
+        var e = assertThrows(HttpStatusException.class, () -> authentication.authenticated(token -> {
+            throw new HttpStatusException("Unauthorized", 401, null);
+        }));
+
+        assertEquals(401, e.status());
+        verify(httpClient, times(2)).send(any(), any());
+    }
+
+    @Test
+    public void sharedTransportShouldLimitConcurrentLogins() throws Exception {
+        var httpClient = mock(HttpClient.class);
+        when(httpClient.connectTimeout()).thenReturn(Optional.of(Duration.ofMillis(10)));
+        var transport = new NiuTransport(httpClient, NiuTransport.newMapper(), 1, false);
+        var running = new AtomicInteger();
+        var maxRunning = new AtomicInteger();
+        var login = Files.readString(Paths.get(AuthenticationTest.class.getResource("login.json").toURI()))
+                .replace("{{access_token}}", "any")
+                .replace("{{token_expires_in}}", Long.toString(Instant.parse("2052-01-01T00:00:00Z").toEpochMilli()));
+        var response = mock(HttpResponse.class);
+        when(response.body()).thenAnswer(invocation -> new ByteArrayInputStream(login.getBytes(UTF_8)));
+        when(response.statusCode()).thenReturn(200);
+        when(httpClient.send(any(HttpRequest.class), any(BodyHandler.class))).thenAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(50);
+            running.decrementAndGet();
+            return response;
+        });
+
+        var executor = Executors.newFixedThreadPool(4);
+        try {
+            var tokens = new ArrayList<Future<Token>>();
+            for (var i = 0; i < 4; i++) {
+                var client = new Client(transport, Retry.build(DISABLED), "Any", ResponseCache.DISABLED,
+                        NiuListener.NONE, Fingerprints.DISABLED, RateLimiter.DISABLED, Hedging.DISABLED,
+                        ConcurrencyLimiter.DISABLED);
+                var authentication = new Authentication("account" + i, "any_pwd", "49", Duration.ofSeconds(10),
+                        Authentication.NO_BACKGROUND_REFRESH, TokenStore.NONE, client);
+                tokens.add(executor.submit(() -> authentication.token()));
+            }
+            for (var token : tokens) {
+                assertEquals("any", token.get().value());
+            }
+
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, maxRunning.get());
+        verify(httpClient, times(4)).send(any(), any());
+    }
 }
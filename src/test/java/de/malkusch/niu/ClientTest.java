@@ -2,8 +2,15 @@ package de.malkusch.niu;
 
 import static de.malkusch.niu.Retry.Configuration.DISABLED;
 import static java.lang.Thread.currentThread;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.failedFuture;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
@@ -13,14 +20,29 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.net.http.HttpResponse.BodyHandler;
 import java.net.http.HttpTimeoutException;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BooleanSupplier;
+import java.util.zip.GZIPOutputStream;
 
 import org.apache.commons.lang3.time.StopWatch;
 import org.junit.jupiter.api.BeforeEach;
@@ -190,6 +212,391 @@ public class ClientTest {
         verify(httpClient, times(3)).send(any(), any());
     }
 
+    @ParameterizedTest
+    @ValueSource(ints = { 400, 401, 403, 404, 499 })
+    void shouldNotRetryClientError(int error) throws Exception {
+        var client = client();
+        givenResponse(response("\"Test\"", error));
+
+        var e = assertThrows(HttpStatusException.class, () -> {
+            client.post(String.class, ANY_URL);
+        });
+
+        assertEquals(error, e.status());
+        verify(httpClient, times(1)).send(any(), any());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = { 429, 503 })
+    void shouldRetryAfterRetryAfter(int status) throws Exception {
+        var client = client(new Configuration(3, Duration.ofMillis(10), Duration.ofSeconds(5), 0));
+        givenResponse(response("\"Test\"", status, "1")) //
+                .thenReturn(response("\"Test\""));
+
+        var stopwatch = StopWatch.createStarted();
+        var response = client.post(String.class, ANY_URL);
+        stopwatch.stop();
+
+        assertEquals("Test", response);
+        assertTrue(stopwatch.getTime(MILLISECONDS) >= 1000, "Retry-After was ignored");
+        verify(httpClient, times(2)).send(any(), any());
+    }
+
+    @Test
+    void shouldNotRetryWhenRetryAfterExceedsMaxDelay() throws Exception {
+        var client = client(new Configuration(3, Duration.ofMillis(10), Duration.ofSeconds(5), 0));
+        givenResponse(response("\"Test\"", 503, "3600"));
+
+        var e = assertThrows(HttpStatusException.class, () -> {
+            client.post(String.class, ANY_URL);
+        });
+
+        assertEquals(Optional.of(Duration.ofHours(1)), e.retryAfter());
+        verify(httpClient, times(1)).send(any(), any());
+    }
+
+    @ParameterizedTest
+    @MethodSource("ALL_RETRIES")
+    void shouldNotRetryInvalidJson(Retry.Configuration retry) throws Exception {
+        var client = client(retry);
+        givenResponse("{invalid");
+
+        var e = assertThrows(IOException.class, () -> {
+            client.post(String.class, ANY_URL);
+        });
+
+        assertTrue(e.getMessage().contains("{invalid"), e.getMessage());
+        verify(httpClient, atMostOnce()).send(any(), any());
+    }
+
+    @Test
+    void shouldTruncateInvalidJsonInErrorMessage() throws Exception {
+        var client = client(DISABLED);
+        var invalid = "{" + "x".repeat(10_000);
+        givenResponse(invalid);
+
+        var e = assertThrows(IOException.class, () -> {
+            client.post(String.class, ANY_URL);
+        });
+
+        assertTrue(e.getMessage().length() < 2_000, "Error message was not truncated");
+    }
+
+    @ParameterizedTest
+    @MethodSource("ALL_RETRIES")
+    void shouldSendAsync(Retry.Configuration retry) throws Exception {
+        var client = client(retry);
+        givenAsyncResponse(completedFuture(asyncResponse("\"Test\"")));
+
+        var response = client.postAsync(String.class, ANY_URL).get();
+
+        assertEquals("Test", response);
+        verify(httpClient, atMostOnce()).sendAsync(any(), any());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = { 0, 99, 400, 499, 500, 599 })
+    void shouldFailAsyncOnHttpError(int error) throws Exception {
+        var client = client(DISABLED);
+        givenAsyncResponse(completedFuture(asyncResponse("\"Test\"", error)));
+
+        var e = assertThrows(ExecutionException.class, () -> {
+            client.postAsync(String.class, ANY_URL).get();
+        });
+        assertInstanceOf(IOException.class, e.getCause());
+    }
+
+    @Test
+    void shouldRetryAsyncWhenException() throws Exception {
+        var client = client();
+        givenAsyncResponse(failedFuture(new IOException())) //
+                .thenReturn(completedFuture(asyncResponse("\"Test\"", 500))) //
+                .thenReturn(completedFuture(asyncResponse("\"Test\"")));
+
+        var response = client.postAsync(String.class, ANY_URL).get();
+
+        assertEquals("Test", response);
+        verify(httpClient, times(3)).sendAsync(any(), any());
+    }
+
+    @Test
+    void shouldFailAsyncWhenRetriesExceeded() throws Exception {
+        var client = client();
+        givenAsyncResponse(completedFuture(asyncResponse("\"Test\"", 500)));
+
+        var e = assertThrows(ExecutionException.class, () -> {
+            client.postAsync(String.class, ANY_URL).get();
+        });
+        assertInstanceOf(IOException.class, e.getCause());
+        verify(httpClient, times(4)).sendAsync(any(), any());
+    }
+
+    @Test
+    void shouldNotifyListener() throws Exception {
+        var metrics = new MetricsListener();
+        var client = new Client(httpClient, Retry.build(TEST_RETRY), "Any", ResponseCache.DISABLED, metrics);
+        givenResponse(response("\"Test\"", 500)) //
+                .thenReturn(response("\"Test\""));
+
+        client.post(String.class, ANY_URL + "?sn=any");
+
+        var endpoint = metrics.endpoint(ANY_URL);
+        assertEquals(1, endpoint.requests());
+        assertEquals(0, endpoint.failures());
+        assertEquals(2, endpoint.attempts());
+        assertEquals(1, endpoint.retries());
+        assertEquals(Long.valueOf(1), endpoint.statuses().get(500));
+        assertEquals(Long.valueOf(1), endpoint.statuses().get(200));
+        assertEquals(1, endpoint.latency().count());
+    }
+
+    @Test
+    void shouldNotifyListenerAboutDecodeFailure() throws Exception {
+        var events = new ArrayList<NiuListener.RequestEvent>();
+        NiuListener listener = new NiuListener() {
+
+            @Override
+            public void onRequest(NiuListener.RequestEvent event) {
+                events.add(event);
+            }
+        };
+        var client = new Client(httpClient, Retry.build(DISABLED), "Any", ResponseCache.DISABLED, listener);
+        givenResponse("{invalid");
+
+        assertThrows(IOException.class, () -> {
+            client.post(String.class, ANY_URL);
+        });
+
+        assertEquals(1, events.size());
+        assertEquals(NiuListener.Outcome.DECODE_ERROR, events.get(0).outcome());
+        assertEquals(200, events.get(0).status());
+    }
+
+    @Test
+    void throwingListenerShouldNotFailRequest() throws Exception {
+        NiuListener listener = new NiuListener() {
+
+            @Override
+            public void onRequest(NiuListener.RequestEvent event) {
+                throw new IllegalStateException();
+            }
+        };
+        var client = new Client(httpClient, Retry.build(DISABLED), "Any", ResponseCache.DISABLED, listener);
+        givenResponse("\"Test\"");
+
+        assertEquals("Test", client.post(String.class, ANY_URL));
+    }
+
+    @Test
+    void hedgeShouldTakeSlotAndBeCancelledWhenPrimaryWins() throws Exception {
+        var sent = new CopyOnWriteArrayList<CompletableFuture<HttpTransport.Response>>();
+        var timeouts = new CopyOnWriteArrayList<Duration>();
+        var bothSent = new CountDownLatch(2);
+        var transport = new HttpTransport() {
+
+            @Override
+            public Response send(HttpRequest request) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public CompletableFuture<Response> sendAsync(HttpRequest request) {
+                var response = new CompletableFuture<Response>();
+                sent.add(response);
+                timeouts.add(request.timeout().orElseThrow());
+                bothSent.countDown();
+                return response;
+            }
+
+            @Override
+            public Duration timeout() {
+                return Duration.ofSeconds(10);
+            }
+        };
+        var hedging = new Hedging(new Hedging.Configuration(Set.of(ANY_URL), 0.95, 0.05));
+        for (var i = 0; i < 64; i++) {
+            hedging.record(ANY_URL, Duration.ofMillis(1).toNanos());
+        }
+        var limiter = new ConcurrencyLimiter(new ConcurrencyLimiter.Configuration(8, 0, Duration.ZERO));
+        var client = new Client(new NiuTransport(transport, false), Retry.build(DISABLED), "Any",
+                ResponseCache.DISABLED, NiuListener.NONE, Fingerprints.DISABLED, RateLimiter.DISABLED, hedging,
+                limiter);
+
+        var result = client.getAsync(String.class, ANY_URL, null, Deadline.after(Duration.ofSeconds(5)));
+        assertTrue(bothSent.await(5, SECONDS));
+        assertEquals(2, limiter.inFlight());
+        assertTrue(timeouts.get(1).compareTo(timeouts.get(0)) < 0, "Hedge timeout " + timeouts);
+        sent.get(0).complete(InMemoryTransport.ok("\"Test\"".getBytes(UTF_8)));
+
+        assertEquals("Test", result.get());
+        // The hedge may still be between sending and registering for cancellation
+        awaitUntil(() -> sent.get(1).isCancelled() && limiter.inFlight() == 0);
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        var timeout = System.nanoTime() + SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() - timeout < 0, "Condition not met within 5s");
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    void queueingShouldShortenRequestTimeout() throws Exception {
+        var timeouts = new CopyOnWriteArrayList<Duration>();
+        var transport = new InMemoryTransport().route("/", request -> {
+            timeouts.add(request.timeout().orElseThrow());
+            return InMemoryTransport.ok("\"Test\"".getBytes(UTF_8));
+        });
+        var limiter = new ConcurrencyLimiter(new ConcurrencyLimiter.Configuration(1, 1, Duration.ofMinutes(1)));
+        var client = limitedClient(transport, limiter, NiuListener.NONE);
+        limiter.acquire();
+
+        var queued = client.getAsync(String.class, ANY_URL, null, Deadline.after(Duration.ofSeconds(5)));
+        Thread.sleep(100);
+        limiter.release();
+
+        assertEquals("Test", queued.get());
+        assertTrue(timeouts.get(0).compareTo(Duration.ofMillis(4900)) <= 0, "Timeout " + timeouts.get(0));
+    }
+
+    @Test
+    void rejectedCallsShouldNotReportAttempts() throws Exception {
+        var attempts = new CopyOnWriteArrayList<NiuListener.AttemptEvent>();
+        var requests = new CopyOnWriteArrayList<NiuListener.RequestEvent>();
+        NiuListener listener = new NiuListener() {
+
+            @Override
+            public void onAttempt(NiuListener.AttemptEvent event) {
+                attempts.add(event);
+            }
+
+            @Override
+            public void onRequest(NiuListener.RequestEvent event) {
+                requests.add(event);
+            }
+        };
+        var limiter = new ConcurrencyLimiter(new ConcurrencyLimiter.Configuration(1, 0, Duration.ZERO));
+        var client = limitedClient(new InMemoryTransport(), limiter, listener);
+        limiter.acquire();
+
+        assertThrows(OverloadedException.class, () -> client.get(String.class, ANY_URL, null));
+        var e = assertThrows(ExecutionException.class, () -> client.getAsync(String.class, ANY_URL, null).get());
+        assertInstanceOf(OverloadedException.class, e.getCause());
+
+        assertEquals(0, attempts.size());
+        assertEquals(2, requests.size());
+    }
+
+    private static Client limitedClient(HttpTransport transport, ConcurrencyLimiter limiter, NiuListener listener) {
+        return new Client(new NiuTransport(transport, false), Retry.build(DISABLED), "Any", ResponseCache.DISABLED,
+                listener, Fingerprints.DISABLED, RateLimiter.DISABLED, Hedging.DISABLED, limiter);
+    }
+
+    @Test
+    void syncAndAsyncAttemptsShouldCountReceivedAndDecodedBytes() throws Exception {
+        var json = "\"" + "Test".repeat(100) + "\"";
+        var compressed = new ByteArrayOutputStream();
+        try (var gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(json.getBytes(UTF_8));
+        }
+        var transport = new HttpTransport() {
+
+            @Override
+            public Response send(HttpRequest request) {
+                var headers = HttpHeaders.of(Map.of("Content-Encoding", List.of("gzip")), (name, value) -> true);
+                // Tells nothing about the body's length
+                var body = new FilterInputStream(new ByteArrayInputStream(compressed.toByteArray())) {
+
+                    @Override
+                    public int available() {
+                        return 0;
+                    }
+                };
+                return new Response(200, headers, body);
+            }
+
+            @Override
+            public CompletableFuture<Response> sendAsync(HttpRequest request) {
+                return completedFuture(send(request));
+            }
+
+            @Override
+            public Duration timeout() {
+                return Duration.ofSeconds(10);
+            }
+        };
+        var attempts = new CopyOnWriteArrayList<NiuListener.AttemptEvent>();
+        NiuListener listener = new NiuListener() {
+
+            @Override
+            public void onAttempt(NiuListener.AttemptEvent event) {
+                attempts.add(event);
+            }
+        };
+        var client = new Client(new NiuTransport(transport, true), Retry.build(DISABLED), "Any",
+                ResponseCache.DISABLED, listener, Fingerprints.DISABLED, RateLimiter.DISABLED, Hedging.DISABLED,
+                ConcurrencyLimiter.DISABLED);
+
+        client.get(String.class, ANY_URL, null);
+        client.getAsync(String.class, ANY_URL, null).get();
+
+        assertEquals(2, attempts.size());
+        for (var attempt : attempts) {
+            assertEquals(compressed.size(), attempt.bytes());
+            assertEquals(json.length(), attempt.uncompressedBytes());
+        }
+    }
+
+    @Test
+    void shouldReuseUnchangedResponse() throws Exception {
+        var metrics = new MetricsListener();
+        var client = fingerprintedClient(metrics);
+        givenResponse(response("\"Test\"")) //
+                .thenReturn(response("\"Test\"")) //
+                .thenReturn(response("\"Changed\""));
+
+        var first = client.get(String.class, ANY_URL, null);
+        var second = client.get(String.class, ANY_URL, null);
+        var third = client.get(String.class, ANY_URL, null);
+
+        assertSame(first, second);
+        assertEquals("Changed", third);
+        assertEquals(1, metrics.endpoint(ANY_URL).unchanged());
+    }
+
+    @Test
+    void shouldReuseUnchangedAsyncResponse() throws Exception {
+        var client = fingerprintedClient(NiuListener.NONE);
+        givenAsyncResponse(completedFuture(asyncResponse("\"Test\"")));
+
+        var first = client.getAsync(String.class, ANY_URL, null).get();
+        var second = client.getAsync(String.class, ANY_URL, null).get();
+
+        assertSame(first, second);
+    }
+
+    @Test
+    void shouldNotReuseResponseOfOtherUrl() throws Exception {
+        var client = fingerprintedClient(NiuListener.NONE);
+        givenResponse(response("\"Test\"")).thenReturn(response("\"Test\""));
+
+        var first = client.get(String.class, ANY_URL + "?sn=1", null);
+        var second = client.get(String.class, ANY_URL + "?sn=2", null);
+
+        assertNotSame(first, second);
+    }
+
+    private Client fingerprintedClient(NiuListener listener) {
+        var fingerprints = new Fingerprints(new Fingerprints.Configuration(Set.of(ANY_URL), 10));
+        return new Client(httpClient, Retry.build(DISABLED), "Any", ResponseCache.DISABLED, listener, fingerprints,
+                RateLimiter.DISABLED, Hedging.DISABLED, ConcurrencyLimiter.DISABLED);
+    }
+
+    private OngoingStubbing<CompletableFuture> givenAsyncResponse(CompletableFuture<?> response) {
+        return when(httpClient.sendAsync(any(HttpRequest.class), any(BodyHandler.class))).thenReturn(response);
+    }
+
     private OngoingStubbing<HttpResponse> givenException(Class<? extends Throwable> exception) throws Exception {
         return when(httpClient.send(any(HttpRequest.class), any(BodyHandler.class))).thenThrow(exception);
     }
@@ -202,13 +609,31 @@ public class ClientTest {
         return givenResponse(response(response));
     }
 
-    private static HttpResponse<String> response(String response) {
+    private static HttpResponse<InputStream> response(String response) {
         return response(response, 200);
     }
 
-    private static HttpResponse<String> response(String response, int status) {
-        HttpResponse<String> httpResponse = mock(HttpResponse.class);
-        when(httpResponse.body()).thenReturn(response);
+    private static HttpResponse<InputStream> response(String response, int status) {
+        HttpResponse<InputStream> httpResponse = mock(HttpResponse.class);
+        when(httpResponse.body()).thenAnswer(invocation -> new ByteArrayInputStream(response.getBytes(UTF_8)));
+        when(httpResponse.statusCode()).thenReturn(status);
+        return httpResponse;
+    }
+
+    private static HttpResponse<InputStream> response(String response, int status, String retryAfter) {
+        var httpResponse = response(response, status);
+        when(httpResponse.headers())
+                .thenReturn(HttpHeaders.of(Map.of("Retry-After", List.of(retryAfter)), (name, value) -> true));
+        return httpResponse;
+    }
+
+    private static HttpResponse<byte[]> asyncResponse(String response) {
+        return asyncResponse(response, 200);
+    }
+
+    private static HttpResponse<byte[]> asyncResponse(String response, int status) {
+        HttpResponse<byte[]> httpResponse = mock(HttpResponse.class);
+        when(httpResponse.body()).thenReturn(response.getBytes(UTF_8));
         when(httpResponse.statusCode()).thenReturn(status);
         return httpResponse;
     }
@@ -0,0 +1,119 @@
+package de.malkusch.niu;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.jupiter.api.Test;
+
+import de.malkusch.niu.ConcurrencyLimiter.Configuration;
+
+public class ConcurrencyLimiterTest {
+
+    private static final long LATENCY = Duration.ofMillis(10).toNanos();
+
+    @Test
+    public void failuresShouldLowerLimit() throws Exception {
+        var limiter = new ConcurrencyLimiter(new Configuration(16, 0, Duration.ZERO));
+
+        limiter.acquire();
+        limiter.release(LATENCY, true);
+
+        assertEquals(14.4, limiter.limit(), 0.001);
+        assertEquals(0, limiter.inFlight());
+    }
+
+    @Test
+    public void fastCallsAtUsedLimitShouldRaiseLimit() throws Exception {
+        var limiter = new ConcurrencyLimiter(new Configuration(32, 0, Duration.ZERO));
+        for (var i = 0; i < 8; i++) {
+            limiter.acquire();
+        }
+
+        limiter.release(LATENCY, false);
+
+        assertTrue(limiter.limit() > 16);
+    }
+
+    @Test
+    public void limitShouldNotExceedMaximum() throws Exception {
+        var limiter = new ConcurrencyLimiter(new Configuration(2, 0, Duration.ZERO));
+        for (var i = 0; i < 10; i++) {
+            limiter.acquire();
+            limiter.acquire();
+            limiter.release(LATENCY, false);
+            limiter.release(LATENCY, false);
+        }
+
+        assertEquals(2, limiter.limit());
+    }
+
+    @Test
+    public void fullQueueShouldShed() throws Exception {
+        var limiter = new ConcurrencyLimiter(new Configuration(1, 0, Duration.ofSeconds(1)));
+        limiter.acquire();
+
+        assertThrows(OverloadedException.class, () -> limiter.acquire());
+        assertEquals(1, limiter.shed());
+    }
+
+    @Test
+    public void releaseShouldGrantSlotToWaiter() throws Exception {
+        var limiter = new ConcurrencyLimiter(new Configuration(1, 1, Duration.ofSeconds(10)));
+        limiter.acquire();
+        var waiting = limiter.acquireAsync();
+        assertFalse(waiting.isDone());
+        assertEquals(1, limiter.queued());
+
+        limiter.release(LATENCY, false);
+
+        assertTrue(waiting.isDone());
+        assertEquals(1, limiter.inFlight());
+        assertEquals(0, limiter.queued());
+    }
+
+    @Test
+    public void waitingTooLongShouldShed() throws Exception {
+        var scheduler = new ManualScheduler();
+        var limiter = new ConcurrencyLimiter(new Configuration(1, 1, Duration.ofMillis(10)), scheduler);
+        limiter.acquire();
+        var waiting = limiter.acquireAsync();
+
+        scheduler.advance(Duration.ofMillis(9));
+        assertFalse(waiting.isDone());
+        scheduler.advance(Duration.ofMillis(1));
+
+        var e = assertThrows(ExecutionException.class, waiting::get);
+        assertInstanceOf(OverloadedException.class, e.getCause());
+        assertEquals(1, limiter.shed());
+        assertEquals(0, limiter.queued());
+    }
+
+    @Test
+    public void disabledShouldNotLimit() throws Exception {
+        for (var i = 0; i < 100; i++) {
+            ConcurrencyLimiter.DISABLED.acquire();
+        }
+        assertEquals(0, ConcurrencyLimiter.DISABLED.inFlight());
+    }
+
+    @Test
+    public void deadlineBeforeMaxWaitShouldFailWithoutShedding() throws Exception {
+        var scheduler = new ManualScheduler();
+        var limiter = new ConcurrencyLimiter(new Configuration(1, 1, Duration.ofMinutes(1)), scheduler);
+        limiter.acquire();
+        var waiting = limiter.acquireAsync(Deadline.after(Duration.ofMillis(50)));
+
+        scheduler.advance(Duration.ofSeconds(1));
+
+        var e = assertThrows(ExecutionException.class, waiting::get);
+        assertInstanceOf(DeadlineExceededException.class, e.getCause());
+        assertEquals(0, limiter.shed());
+        assertEquals(0, limiter.queued());
+    }
+}
@@ -0,0 +1,67 @@
+package de.malkusch.niu;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+public class DeadlineTest {
+
+    @Test
+    public void timeoutShouldBeShortenedToRemainingTime() throws Exception {
+        var deadline = Deadline.after(Duration.ofSeconds(1));
+
+        assertTrue(deadline.timeout(Duration.ofSeconds(10)).compareTo(Duration.ofSeconds(1)) <= 0);
+        assertEquals(Duration.ofMillis(100), deadline.timeout(Duration.ofMillis(100)));
+    }
+
+    @Test
+    public void expiredDeadlineShouldFail() throws Exception {
+        var deadline = Deadline.after(Duration.ofMillis(1));
+        Thread.sleep(10);
+
+        var e = assertThrows(DeadlineExceededException.class, () -> deadline.timeout(Duration.ofSeconds(1)));
+        assertEquals(Duration.ofMillis(1), e.deadline());
+    }
+
+    @Test
+    public void coversShouldCompareDelayWithRemainingTime() {
+        var deadline = Deadline.after(Duration.ofSeconds(1));
+
+        assertTrue(deadline.covers(Duration.ofMillis(100)));
+        assertFalse(deadline.covers(Duration.ofSeconds(2)));
+        assertTrue(Deadline.NONE.covers(Duration.ofDays(365)));
+    }
+
+    @Test
+    public void noneShouldNotLimit() throws Exception {
+        var future = new CompletableFuture<String>();
+
+        assertSame(future, Deadline.NONE.bound(future));
+        assertEquals(Duration.ofSeconds(10), Deadline.NONE.timeout(Duration.ofSeconds(10)));
+    }
+
+    @Test
+    public void getShouldWaitAtMostUntilDeadline() {
+        var future = new CompletableFuture<String>();
+        var started = System.nanoTime();
+
+        assertThrows(DeadlineExceededException.class, () -> Deadline.after(Duration.ofMillis(50)).get(future));
+
+        assertTrue(Duration.ofNanos(System.nanoTime() - started).compareTo(Duration.ofSeconds(1)) < 0);
+        assertFalse(future.isDone());
+    }
+
+    @Test
+    public void getShouldReturnValueWithinDeadline() throws Exception {
+        var future = CompletableFuture.supplyAsync(() -> "value");
+
+        assertEquals("value", Deadline.after(Duration.ofSeconds(5)).get(future));
+    }
+}
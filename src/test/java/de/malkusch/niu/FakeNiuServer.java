@@ -0,0 +1,325 @@
+package de.malkusch.niu;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An in-process stand-in for the NIU API. It serves canned responses for the
+ * login and all telemetry endpoints, and can be configured to be slow, to fail,
+ * to throttle and to expire tokens.
+ *
+ * <pre>
+ * try (var server = FakeNiuServer.start()) {
+ *     server.latency(Latency.logNormal(Duration.ofMillis(50), 0.5)).errorRate(0.01);
+ *     var niu = server.niu().build();
+ * }
+ * </pre>
+ */
+final class FakeNiuServer implements AutoCloseable {
+
+    static final String ACCOUNT = "any_account";
+    static final String PASSWORD = "any_pwd";
+    static final String COUNTRY_CODE = "49";
+    static final String SN = "N1GPA1A1B1C1D1E";
+
+    private static final String LOGIN = "/v3/api/oauth2/token";
+    private static final Map<String, byte[]> BODIES = Map.of( //
+            "/motoinfo/list", resource("vehicles.json"), //
+            "/v3/motor_data/index_info", resource("index_info.json"), //
+            "/v3/motor_data/battery_info", resource("battery_info.json"), //
+            "/motoinfo/overallTally", resource("odometer.json"));
+    private static final String LOGIN_BODY = new String(resource("login.json"), UTF_8);
+
+    /**
+     * The server's latency per request.
+     */
+    @FunctionalInterface
+    interface Latency {
+
+        Duration next();
+
+        static Latency none() {
+            return () -> Duration.ZERO;
+        }
+
+        static Latency fixed(Duration latency) {
+            return () -> latency;
+        }
+
+        static Latency uniform(Duration min, Duration max) {
+            return () -> Duration
+                    .ofNanos(ThreadLocalRandom.current().nextLong(min.toNanos(), max.toNanos() + 1));
+        }
+
+        /**
+         * A long tail like a real service's: most requests are close to the
+         * median, some are much slower.
+         *
+         * @param sigma
+         *            The tail's weight, e.g. 0.5 makes the p99 about three times
+         *            the median.
+         */
+        static Latency logNormal(Duration median, double sigma) {
+            return () -> Duration.ofNanos(
+                    (long) (median.toNanos() * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian())));
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final URI uri;
+
+    private volatile Latency latency = Latency.none();
+    private volatile double errorRate;
+    private volatile double throttleRate;
+    private volatile Duration retryAfter;
+    private volatile Duration tokenLifetime = Duration.ofHours(1);
+    private volatile String compression = "gzip";
+
+    private final Map<String, Instant> tokens = new ConcurrentHashMap<>();
+    private final AtomicLong tokenIds = new AtomicLong();
+    private final AtomicInteger logins = new AtomicInteger();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger errors = new AtomicInteger();
+    private final AtomicInteger throttled = new AtomicInteger();
+    private final AtomicInteger unauthorized = new AtomicInteger();
+
+    private FakeNiuServer(HttpServer server, ExecutorService executor) {
+        this.server = server;
+        this.executor = executor;
+        var address = server.getAddress();
+        uri = URI.create("http://" + address.getHostString() + ":" + address.getPort());
+    }
+
+    static FakeNiuServer start() throws IOException {
+        var server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        var executor = Executors.newCachedThreadPool(runnable -> {
+            var thread = new Thread(runnable, "fake-niu-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        var fake = new FakeNiuServer(server, executor);
+        server.createContext("/", fake::handle);
+        server.start();
+        return fake;
+    }
+
+    /**
+     * A builder for a {@link Niu} which sends all requests to this server.
+     */
+    Niu.Builder niu() {
+        var httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(1)).build();
+        return new Niu.Builder(ACCOUNT, PASSWORD, COUNTRY_CODE)
+                .transport(new NiuTransport(new LocalHttpClient(httpClient, uri), true));
+    }
+
+    FakeNiuServer latency(Latency latency) {
+        this.latency = latency;
+        return this;
+    }
+
+    /**
+     * @param errorRate
+     *            The share of requests which fail with a 500.
+     */
+    FakeNiuServer errorRate(double errorRate) {
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    /**
+     * @param throttleRate
+     *            The share of requests which fail with a 429.
+     * @param retryAfter
+     *            The 429's Retry-After in seconds, {@code null} for none.
+     */
+    FakeNiuServer throttle(double throttleRate, Duration retryAfter) {
+        this.throttleRate = throttleRate;
+        this.retryAfter = retryAfter;
+        return this;
+    }
+
+    /**
+     * Tokens of later logins expire after {@code tokenLifetime}, after which
+     * requests with them fail with a 401.
+     */
+    FakeNiuServer tokenLifetime(Duration tokenLifetime) {
+        this.tokenLifetime = tokenLifetime;
+        return this;
+    }
+
+    /**
+     * Compresses responses with {@code encoding}, if the request accepts it.
+     *
+     * @param encoding
+     *            gzip, deflate or {@code null} for uncompressed responses
+     */
+    FakeNiuServer compression(String encoding) {
+        this.compression = encoding;
+        return this;
+    }
+
+    /**
+     * Lets all issued tokens expire before the time the login announced.
+     */
+    void revokeTokens() {
+        tokens.clear();
+    }
+
+    int logins() {
+        return logins.get();
+    }
+
+    int requests() {
+        return requests.get();
+    }
+
+    int errors() {
+        return errors.get();
+    }
+
+    int throttled() {
+        return throttled.get();
+    }
+
+    int unauthorized() {
+        return unauthorized.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            requests.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            sleep(latency.next());
+
+            var random = ThreadLocalRandom.current();
+            if (random.nextDouble() < throttleRate) {
+                throttled.incrementAndGet();
+                var retryAfter = this.retryAfter;
+                if (retryAfter != null) {
+                    exchange.getResponseHeaders().set("Retry-After", Long.toString(retryAfter.toSeconds()));
+                }
+                respond(exchange, 429, new byte[0]);
+                return;
+            }
+            if (random.nextDouble() < errorRate) {
+                errors.incrementAndGet();
+                respond(exchange, 500, new byte[0]);
+                return;
+            }
+
+            var path = exchange.getRequestURI().getPath();
+            if (path.equals(LOGIN)) {
+                respond(exchange, 200, compressed(exchange, login()));
+                return;
+            }
+            var body = BODIES.get(path);
+            if (body == null) {
+                respond(exchange, 404, new byte[0]);
+                return;
+            }
+            if (!isValid(exchange.getRequestHeaders().getFirst("token"))) {
+                unauthorized.incrementAndGet();
+                respond(exchange, 401, new byte[0]);
+                return;
+            }
+            respond(exchange, 200, compressed(exchange, body));
+
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private byte[] login() {
+        logins.incrementAndGet();
+        var token = "token-" + tokenIds.incrementAndGet();
+        var expiresAt = Instant.now().plus(tokenLifetime);
+        tokens.put(token, expiresAt);
+        return LOGIN_BODY.replace("{{access_token}}", token)
+                .replace("{{token_expires_in}}", Long.toString(expiresAt.getEpochSecond())).getBytes(UTF_8);
+    }
+
+    private boolean isValid(String token) {
+        if (token == null) {
+            return false;
+        }
+        var expiresAt = tokens.get(token);
+        return expiresAt != null && expiresAt.isAfter(Instant.now());
+    }
+
+    private byte[] compressed(HttpExchange exchange, byte[] body) throws IOException {
+        var encoding = this.compression;
+        var accepted = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (encoding == null || accepted == null || !accepted.contains(encoding)) {
+            return body;
+        }
+        var compressed = new ByteArrayOutputStream();
+        try (var output = encoding.equals("gzip") ? new GZIPOutputStream(compressed)
+                : new DeflaterOutputStream(compressed)) {
+            output.write(body);
+        }
+        exchange.getResponseHeaders().set("Content-Encoding", encoding);
+        return compressed.toByteArray();
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            try (var response = exchange.getResponseBody()) {
+                response.write(body);
+            }
+        }
+    }
+
+    private static void sleep(Duration duration) throws IOException {
+        if (duration.isZero() || duration.isNegative()) {
+            return;
+        }
+        try {
+            Thread.sleep(duration.toMillis(), duration.toNanosPart() % 1_000_000);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    private static byte[] resource(String name) {
+        try (var resource = FakeNiuServer.class.getResourceAsStream(name)) {
+            return resource.readAllBytes();
+
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
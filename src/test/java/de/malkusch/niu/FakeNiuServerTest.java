@@ -0,0 +1,130 @@
+package de.malkusch.niu;
+
+import static de.malkusch.niu.FakeNiuServer.SN;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import de.malkusch.niu.FakeNiuServer.Latency;
+import de.malkusch.niu.Niu.Endpoint;
+
+public class FakeNiuServerTest {
+
+    private FakeNiuServer server;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = FakeNiuServer.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
+    @Test
+    public void shouldServeAllEndpoints() throws Exception {
+        var niu = server.niu().build();
+
+        assertEquals(SN, niu.vehicles()[0].serialNumber());
+        assertEquals(87, niu.vehicle(SN).battery().charge());
+        assertEquals(87, niu.batteryInfo(SN).charge());
+        assertEquals(6789.1, niu.odometer(SN).mileage());
+        assertEquals(1, server.logins());
+    }
+
+    @Test
+    public void shouldRecoverFromErrors() throws Exception {
+        var niu = server.niu().retry(10, Duration.ofMillis(1), Duration.ofMillis(10)).build();
+        server.errorRate(0.1).throttle(0.1, null);
+
+        for (var i = 0; i < 50; i++) {
+            niu.vehicle(SN);
+        }
+
+        assertTrue(server.errors() + server.throttled() > 0);
+    }
+
+    @Test
+    public void shouldLoginAgainAfterRevokedToken() throws Exception {
+        var niu = server.niu().build();
+        niu.vehicle(SN);
+
+        server.revokeTokens();
+        niu.vehicle(SN);
+
+        assertEquals(1, server.unauthorized());
+        assertEquals(2, server.logins());
+    }
+
+    @Test
+    public void deadlineShouldBoundSlowCalls() throws Exception {
+        var niu = server.niu().retry(3, Duration.ofMillis(50), Duration.ofMillis(50)).build();
+        server.latency(Latency.fixed(Duration.ofMillis(300)));
+        var started = System.nanoTime();
+
+        assertThrows(DeadlineExceededException.class, () -> niu.withDeadline(Duration.ofMillis(100)).vehicle(SN));
+
+        assertTrue(Duration.ofNanos(System.nanoTime() - started).compareTo(Duration.ofMillis(300)) < 0);
+    }
+
+    @Test
+    public void shouldServeStaleDuringOutage() throws Exception {
+        var niu = server.niu().disabledRetry().serveStale(Endpoint.VEHICLE, Duration.ofMinutes(1)).build();
+        var fresh = niu.agedVehicle(SN);
+        server.errorRate(1);
+
+        var stale = niu.agedVehicle(SN);
+
+        assertSame(fresh.value(), stale.value());
+        assertEquals(Duration.ZERO, fresh.age());
+        assertTrue(stale.age().compareTo(Duration.ZERO) > 0);
+    }
+
+    @Test
+    public void unchangedVehiclesShouldBeIdentical() throws Exception {
+        var niu = server.niu().skipUnchangedDecoding(Endpoint.VEHICLES).build();
+
+        var first = niu.vehicles();
+
+        assertSame(first, niu.vehicles());
+        assertSame(first, niu.vehiclesAsync().get());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "gzip", "deflate" })
+    public void shouldDecodeCompressedResponses(String encoding) throws Exception {
+        var metrics = new MetricsListener();
+        var niu = server.niu().listener(metrics).build();
+        server.compression(encoding);
+
+        assertEquals(87, niu.vehicle(SN).battery().charge());
+        assertEquals(87, niu.vehicleAsync(SN).get().battery().charge());
+
+        var endpoint = metrics.endpoint("https://app-api-fk.niu.com/v3/motor_data/index_info");
+        assertTrue(endpoint.bytes() < endpoint.uncompressedBytes(), endpoint.bytes() + " compressed bytes");
+    }
+
+    @Test
+    public void loadShouldSucceed() throws Exception {
+        server.latency(Latency.uniform(Duration.ofMillis(1), Duration.ofMillis(5)));
+        var niu = server.niu().build();
+
+        var results = LoadDriver.run(niu, LoadDriver.OPERATIONS, 8, Duration.ofMillis(500));
+
+        for (var result : results) {
+            assertTrue(result.requests() > 0, result.toString());
+            assertEquals(0, result.failures(), result.toString());
+            assertTrue(result.p99().compareTo(Duration.ofMillis(1)) >= 0, result.toString());
+        }
+    }
+}
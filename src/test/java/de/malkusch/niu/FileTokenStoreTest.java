@@ -0,0 +1,61 @@
+package de.malkusch.niu;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.malkusch.niu.TokenStore.StoredToken;
+
+public class FileTokenStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldLoadStoredToken() throws Exception {
+        var store = new FileTokenStore(directory);
+        var token = new StoredToken("token", Instant.parse("2052-01-01T00:00:00Z"), "refresh",
+                Instant.parse("2053-01-01T00:00:00Z"));
+
+        store.store("account", token);
+
+        assertEquals(Optional.of(token), store.load("account"));
+    }
+
+    @Test
+    void shouldReplaceStoredToken() throws Exception {
+        var store = new FileTokenStore(directory);
+        var token = new StoredToken("token2", Instant.parse("2052-01-01T00:00:00Z"), null, null);
+
+        store.store("account", new StoredToken("token1", Instant.parse("2052-01-01T00:00:00Z"), null, null));
+        store.store("account", token);
+
+        assertEquals(Optional.of(token), store.load("account"));
+        try (var files = Files.list(directory)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    void shouldSeparateAccounts() throws Exception {
+        var store = new FileTokenStore(directory);
+
+        store.store("account1", new StoredToken("token", Instant.parse("2052-01-01T00:00:00Z"), null, null));
+
+        assertTrue(store.load("account2").isEmpty());
+    }
+
+    @Test
+    void missingTokenShouldBeEmpty() throws Exception {
+        var store = new FileTokenStore(directory.resolve("missing"));
+
+        assertTrue(store.load("account").isEmpty());
+    }
+}
@@ -0,0 +1,53 @@
+package de.malkusch.niu;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URLEncoder;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+public class FormTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = { "", "N1GPA1A1B1C1D1E", "john.doe+niu@example.org", "a b&c=d", "-_.*~!'()",
+            "\u00e4\u00f6\u00fc \u00df", "\u20ac", "\uD83D\uDEF5", "\uD83D", "x\uDEF5y", "/?#[]%" })
+    public void shouldEncodeLikeUrlEncoder(String value) {
+        var form = Form.of(new Field(value, value));
+
+        var expected = URLEncoder.encode(value, UTF_8) + "=" + URLEncoder.encode(value, UTF_8);
+        assertEquals(expected, form.toString());
+    }
+
+    @Test
+    public void shouldJoinFieldsWithoutLeadingSeparator() {
+        var form = Form.of(new Field("a", "1"), new Field("b", "2"), new Field("c", "3"));
+
+        assertEquals("a=1&b=2&c=3", form.toString());
+    }
+
+    @Test
+    public void withShouldExtendConstantFields() {
+        var constant = Form.of(new Field("app_id", "niu"), new Field("grant_type", "refresh_token"));
+
+        var form = constant.with(new Field("refresh_token", "a b"));
+
+        assertEquals("app_id=niu&grant_type=refresh_token&refresh_token=a+b", form.toString());
+        assertEquals("app_id=niu&grant_type=refresh_token", constant.toString());
+        assertEquals("a=1", Form.EMPTY.with(new Field("a", "1")).toString());
+        assertSame(constant, constant.with());
+    }
+
+    @Test
+    public void equalFormsShouldBeEqual() {
+        assertEquals(Form.of(new Field("sn", "1")), Form.of(new Field("sn", "1")));
+        assertEquals(Form.of(new Field("sn", "1")).hashCode(), Form.of(new Field("sn", "1")).hashCode());
+        assertNotEquals(Form.of(new Field("sn", "1")), Form.of(new Field("sn", "2")));
+        assertTrue(Form.of().isEmpty());
+    }
+}
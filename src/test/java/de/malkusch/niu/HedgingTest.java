@@ -0,0 +1,59 @@
+package de.malkusch.niu;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import de.malkusch.niu.Hedging.Configuration;
+
+public class HedgingTest {
+
+    private static final String URL = "https://app-api.niu.com/v5/scooter/detail";
+
+    private final Hedging hedging = new Hedging(new Configuration(Set.of(URL), 0.95, 0.05));
+
+    @Test
+    public void onlyConfiguredEndpointsShouldBeHedged() {
+        assertTrue(hedging.isEnabled(URL + "?sn=SN"));
+        assertFalse(hedging.isEnabled("https://app-api.niu.com/motoinfo/overallTally"));
+        assertFalse(Hedging.DISABLED.isEnabled(URL));
+    }
+
+    @Test
+    public void shouldNotHedgeWithoutSamples() {
+        for (var i = 0; i < 63; i++) {
+            hedging.record(URL, Duration.ofMillis(100).toNanos());
+        }
+
+        assertNull(hedging.delay(URL));
+    }
+
+    @Test
+    public void delayShouldBeSlowPercentile() {
+        for (var i = 0; i < 64; i++) {
+            hedging.record(URL, Duration.ofMillis(i < 60 ? 100 : 2000).toNanos());
+        }
+
+        var delay = hedging.delay(URL);
+        assertTrue(delay.compareTo(Duration.ofMillis(1000)) > 0, "Delay " + delay);
+    }
+
+    @Test
+    public void hedgesShouldBeLimitedByExtraLoad() {
+        var hedges = 0;
+        for (var i = 0; i < 1000; i++) {
+            hedging.delay(URL);
+            if (hedging.tryHedge()) {
+                hedges++;
+            }
+        }
+
+        assertEquals(50, hedges, 10);
+    }
+}
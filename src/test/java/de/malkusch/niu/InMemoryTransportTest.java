@@ -0,0 +1,78 @@
+package de.malkusch.niu;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.jupiter.api.Test;
+
+public class InMemoryTransportTest {
+
+    private static final byte[] BODY = "{\"status\":0}".getBytes(UTF_8);
+
+    private static HttpRequest request(String path) {
+        return HttpRequest.newBuilder(URI.create("https://app-api-fk.niu.com" + path + "?sn=1")).build();
+    }
+
+    @Test
+    public void shouldRespondByPath() throws Exception {
+        var transport = new InMemoryTransport().respond("/v3/motor_data/index_info", BODY);
+
+        var response = transport.send(request("/v3/motor_data/index_info"));
+
+        assertEquals(200, response.status());
+        assertEquals("application/json", response.headers().firstValue("Content-Type").get());
+        assertArrayEquals(BODY, response.body().readAllBytes());
+    }
+
+    @Test
+    public void shouldAnswerUnknownPathWith404() throws Exception {
+        var transport = new InMemoryTransport().respond("/v3/motor_data/index_info", BODY);
+
+        var response = transport.send(request("/v3/motor_data/battery_info"));
+
+        assertEquals(404, response.status());
+        assertEquals(0, response.body().readAllBytes().length);
+    }
+
+    @Test
+    public void asyncShouldCompleteWithWholeBody() throws Exception {
+        var transport = new InMemoryTransport().respond("/v3/motor_data/index_info", BODY);
+
+        var response = transport.sendAsync(request("/v3/motor_data/index_info")).get();
+
+        assertEquals(BODY.length, response.body().available());
+        assertArrayEquals(BODY, response.body().readAllBytes());
+    }
+
+    @Test
+    public void shouldRouteToHandler() throws Exception {
+        var transport = new InMemoryTransport().route("/v3/motor_data/index_info",
+                request -> InMemoryTransport.ok(request.uri().getQuery().getBytes(UTF_8)));
+
+        var response = transport.send(request("/v3/motor_data/index_info"));
+
+        assertEquals("sn=1", new String(response.body().readAllBytes(), UTF_8));
+    }
+
+    @Test
+    public void asyncShouldFailWithHandlerFailure() {
+        var transport = new InMemoryTransport().route("/v3/motor_data/index_info", request -> {
+            throw new IOException("connection reset");
+        });
+
+        var response = transport.sendAsync(request("/v3/motor_data/index_info"));
+
+        var e = assertThrows(ExecutionException.class, response::get);
+        assertInstanceOf(IOException.class, e.getCause());
+        assertTrue(response.isCompletedExceptionally());
+    }
+}
@@ -0,0 +1,120 @@
+package de.malkusch.niu;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.failedFuture;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class LastKnownGoodTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private CompletableFuture<String> load() {
+        return completedFuture("value" + loads.incrementAndGet());
+    }
+
+    @Test
+    public void firstCallShouldWaitForLoad() throws Exception {
+        var lastKnownGood = new LastKnownGood<String>(Duration.ofMinutes(1));
+
+        var aged = lastKnownGood.getAsync("sn", this::load).get();
+
+        assertEquals("value1", aged.value());
+        assertEquals(Duration.ZERO, aged.age());
+    }
+
+    @Test
+    public void shouldServeLastValueAndRefreshInBackground() throws Exception {
+        var lastKnownGood = new LastKnownGood<String>(Duration.ofMinutes(1));
+        lastKnownGood.getAsync("sn", this::load).get();
+        var refresh = new CompletableFuture<String>();
+
+        var aged = lastKnownGood.getAsync("sn", () -> refresh);
+
+        assertTrue(aged.isDone());
+        assertEquals("value1", aged.get().value());
+        assertFalse(aged.get().age().isNegative());
+
+        refresh.complete("value2");
+        assertEquals("value2", lastKnownGood.getAsync("sn", this::load).get().value());
+    }
+
+    @Test
+    public void shouldRefreshOnlyOnceAtATime() throws Exception {
+        var lastKnownGood = new LastKnownGood<String>(Duration.ofMinutes(1));
+        lastKnownGood.getAsync("sn", this::load).get();
+        var refresh = new CompletableFuture<String>();
+        lastKnownGood.getAsync("sn", () -> refresh);
+
+        lastKnownGood.getAsync("sn", this::load).get();
+        lastKnownGood.getAsync("sn", this::load).get();
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void failedRefreshShouldKeepServingStaleValue() throws Exception {
+        var lastKnownGood = new LastKnownGood<String>(Duration.ofMinutes(1));
+        lastKnownGood.getAsync("sn", this::load).get();
+
+        lastKnownGood.getAsync("sn", () -> failedFuture(new IOException()));
+
+        assertEquals("value1", lastKnownGood.getAsync("sn", () -> failedFuture(new IOException())).get().value());
+    }
+
+    @Test
+    public void tooStaleValueShouldNotBeServed() throws Exception {
+        var lastKnownGood = new LastKnownGood<String>(Duration.ofMillis(10));
+        lastKnownGood.getAsync("sn", this::load).get();
+        Thread.sleep(20);
+
+        var e = assertThrows(ExecutionException.class,
+                () -> lastKnownGood.getAsync("sn", () -> failedFuture(new IOException())).get());
+        assertInstanceOf(IOException.class, e.getCause());
+
+        assertEquals("value2", lastKnownGood.getAsync("sn", this::load).get().value());
+    }
+
+    @Test
+    public void keysShouldBeIndependent() throws Exception {
+        var lastKnownGood = new LastKnownGood<String>(Duration.ofMinutes(1));
+        lastKnownGood.getAsync("sn1", this::load).get();
+
+        assertEquals("value2", lastKnownGood.getAsync("sn2", this::load).get().value());
+    }
+
+    @Test
+    public void disabledShouldAlwaysLoad() throws Exception {
+        var lastKnownGood = new LastKnownGood<String>(null);
+
+        lastKnownGood.getAsync("sn", this::load).get();
+        var aged = lastKnownGood.getAsync("sn", this::load).get();
+
+        assertEquals("value2", aged.value());
+        assertEquals(Duration.ZERO, aged.age());
+    }
+
+    @Test
+    public void waitForLoadShouldBeBoundedByDeadline() throws Exception {
+        var lastKnownGood = new LastKnownGood<String>(Duration.ofMinutes(1));
+        var pending = new CompletableFuture<String>();
+        lastKnownGood.getAsync("sn", () -> pending);
+
+        var waiting = lastKnownGood.getAsync("sn", Deadline.after(Duration.ofMillis(50)), this::load);
+
+        var e = assertThrows(ExecutionException.class, waiting::get);
+        assertInstanceOf(DeadlineExceededException.class, e.getCause());
+        assertEquals(0, loads.get());
+    }
+}
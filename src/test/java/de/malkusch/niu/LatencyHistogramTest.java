@@ -0,0 +1,55 @@
+package de.malkusch.niu;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    void emptyHistogramShouldReturnZero() {
+        var histogram = new LatencyHistogram();
+
+        assertEquals(Duration.ZERO, histogram.percentile(0.99));
+    }
+
+    @Test
+    void shouldReturnPercentilesWithinPrecision() {
+        var histogram = new LatencyHistogram();
+        for (var millis = 1; millis <= 1000; millis++) {
+            histogram.record(Duration.ofMillis(millis));
+        }
+
+        assertEquals(1000, histogram.count());
+        assertWithinPrecision(Duration.ofMillis(500), histogram.percentile(0.5));
+        assertWithinPrecision(Duration.ofMillis(990), histogram.percentile(0.99));
+        assertWithinPrecision(Duration.ofMillis(1000), histogram.percentile(1));
+    }
+
+    @Test
+    void bucketsShouldCoverTheirUpperBound() {
+        for (var value : new long[] { 0, 1, 7, 8, 9, 15, 16, 17, 1000, 123_456_789, Long.MAX_VALUE / 1000 }) {
+            var bucket = LatencyHistogram.bucket(value);
+            assertTrue(LatencyHistogram.upperBound(bucket) >= value, "upper bound of " + value);
+            assertEquals(bucket, LatencyHistogram.bucket(LatencyHistogram.upperBound(bucket)));
+        }
+    }
+
+    @Test
+    void resetShouldClear() {
+        var histogram = new LatencyHistogram();
+        histogram.record(Duration.ofMillis(1));
+
+        histogram.reset();
+
+        assertEquals(0, histogram.count());
+    }
+
+    private static void assertWithinPrecision(Duration expected, Duration actual) {
+        var error = Math.abs(actual.toNanos() - expected.toNanos()) / (double) expected.toNanos();
+        assertTrue(error <= 0.125, "Expected " + expected + " but was " + actual);
+    }
+}
@@ -0,0 +1,130 @@
+package de.malkusch.niu;
+
+import static de.malkusch.niu.FakeNiuServer.SN;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.malkusch.niu.FakeNiuServer.Latency;
+
+/**
+ * Drives concurrent load through the whole {@link Niu} API and reports
+ * throughput and latency percentiles per operation. Run it against a
+ * {@link FakeNiuServer}:
+ *
+ * <pre>
+ * LoadDriver [concurrency] [seconds] [median latency ms] [error rate] [429 rate]
+ * </pre>
+ */
+final class LoadDriver {
+
+    @FunctionalInterface
+    interface Call {
+        Object call(Niu niu) throws IOException;
+    }
+
+    record Operation(String name, Call call) {
+    }
+
+    static final List<Operation> OPERATIONS = List.of( //
+            new Operation("vehicles", Niu::vehicles), //
+            new Operation("vehicle", niu -> niu.vehicle(SN)), //
+            new Operation("batteryInfo", niu -> niu.batteryInfo(SN)), //
+            new Operation("odometer", niu -> niu.odometer(SN)));
+
+    record Result(String operation, long requests, long failures, double throughput, Duration p50, Duration p95,
+            Duration p99) {
+
+        @Override
+        public String toString() {
+            return String.format("%-12s %8d %8d %10.1f/s %8.1fms %8.1fms %8.1fms", operation, requests, failures,
+                    throughput, millis(p50), millis(p95), millis(p99));
+        }
+
+        private static double millis(Duration duration) {
+            return duration.toNanos() / 1_000_000.0;
+        }
+    }
+
+    private static final class Stats {
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private final AtomicLong failures = new AtomicLong();
+    }
+
+    /**
+     * Calls all {@link #OPERATIONS} round robin from {@code concurrency}
+     * threads for {@code duration}.
+     */
+    static List<Result> run(Niu niu, List<Operation> operations, int concurrency, Duration duration)
+            throws InterruptedException {
+
+        var stats = new ArrayList<Stats>();
+        for (var i = 0; i < operations.size(); i++) {
+            stats.add(new Stats());
+        }
+        var started = System.nanoTime();
+        var end = started + duration.toNanos();
+        var done = new CountDownLatch(concurrency);
+        for (var worker = 0; worker < concurrency; worker++) {
+            var first = worker;
+            var thread = new Thread(() -> {
+                try {
+                    for (var i = first; System.nanoTime() < end; i++) {
+                        var operation = i % operations.size();
+                        var requested = System.nanoTime();
+                        try {
+                            operations.get(operation).call().call(niu);
+
+                        } catch (IOException | RuntimeException e) {
+                            stats.get(operation).failures.incrementAndGet();
+                        }
+                        stats.get(operation).latencies.recordNanos(System.nanoTime() - requested);
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }, "load-driver-" + worker);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        done.await();
+        var seconds = (System.nanoTime() - started) / 1e9;
+
+        var results = new ArrayList<Result>();
+        for (var i = 0; i < operations.size(); i++) {
+            var latencies = stats.get(i).latencies;
+            var requests = latencies.count();
+            results.add(new Result(operations.get(i).name(), requests, stats.get(i).failures.get(),
+                    requests / seconds, latencies.percentile(0.5), latencies.percentile(0.95),
+                    latencies.percentile(0.99)));
+        }
+        return results;
+    }
+
+    public static void main(String[] args) throws Exception {
+        var concurrency = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        var duration = Duration.ofSeconds(args.length > 1 ? Long.parseLong(args[1]) : 10);
+        var median = Duration.ofMillis(args.length > 2 ? Long.parseLong(args[2]) : 50);
+        var errorRate = args.length > 3 ? Double.parseDouble(args[3]) : 0;
+        var throttleRate = args.length > 4 ? Double.parseDouble(args[4]) : 0;
+
+        try (var server = FakeNiuServer.start()) {
+            server.latency(Latency.logNormal(median, 0.5)).errorRate(errorRate).throttle(throttleRate, null);
+            var niu = server.niu().retry(3, Duration.ofMillis(50), Duration.ofSeconds(1)).build();
+
+            var results = run(niu, OPERATIONS, concurrency, duration);
+
+            System.out.printf("%d threads, %s, median latency %s, error rate %.3f, 429 rate %.3f%n", concurrency,
+                    duration, median, errorRate, throttleRate);
+            System.out.printf("%-12s %8s %8s %12s %10s %10s %10s%n", "operation", "requests", "failures",
+                    "throughput", "p50", "p95", "p99");
+            results.forEach(System.out::println);
+            System.out.printf("server: %d requests, %d logins, %d errors, %d throttled, %d unauthorized%n",
+                    server.requests(), server.logins(), server.errors(), server.throttled(), server.unauthorized());
+        }
+    }
+}
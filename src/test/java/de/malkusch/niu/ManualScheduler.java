@@ -0,0 +1,137 @@
+package de.malkusch.niu;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs scheduled tasks only when the test advances its virtual time, so that
+ * tests don't depend on sleeps or a loaded machine's timing.
+ */
+final class ManualScheduler extends AbstractExecutorService implements ScheduledExecutorService {
+
+    private final class Task<T> extends FutureTask<T> implements ScheduledFuture<T> {
+
+        private final long at;
+        private final long sequence = sequences++;
+
+        Task(Callable<T> callable, long at) {
+            super(callable);
+            this.at = at;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(at - now, NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            var task = (Task<?>) other;
+            var compared = Long.compare(at, task.at);
+            return compared != 0 ? compared : Long.compare(sequence, task.sequence);
+        }
+    }
+
+    private final PriorityQueue<Task<?>> tasks = new PriorityQueue<>();
+    private long now;
+    private long sequences;
+
+    /**
+     * Runs all tasks which are due within {@code duration}, including the
+     * ones which those tasks schedule.
+     */
+    synchronized void advance(Duration duration) {
+        var until = now + duration.toNanos();
+        while (!tasks.isEmpty() && tasks.peek().at <= until) {
+            runNext();
+        }
+        now = until;
+    }
+
+    /**
+     * Advances the time to the next pending task and runs it.
+     *
+     * @return {@code false} if no task was pending
+     */
+    synchronized boolean runNext() {
+        Task<?> task;
+        do {
+            task = tasks.poll();
+            if (task == null) {
+                return false;
+            }
+        } while (task.isCancelled());
+        now = Math.max(now, task.at);
+        task.run();
+        return true;
+    }
+
+    synchronized int pending() {
+        return (int) tasks.stream().filter(it -> !it.isCancelled()).count();
+    }
+
+    @Override
+    public synchronized <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        var task = new Task<>(callable, now + Math.max(0, unit.toNanos(delay)));
+        tasks.add(task);
+        return task;
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        return schedule(() -> {
+            command.run();
+            return null;
+        }, delay, unit);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        schedule(command, 0, NANOSECONDS);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay,
+            TimeUnit unit) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return List.of();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return false;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return false;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) {
+        return false;
+    }
+}
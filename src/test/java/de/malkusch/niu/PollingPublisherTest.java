@@ -0,0 +1,105 @@
+package de.malkusch.niu;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class PollingPublisherTest {
+
+    private static final Duration INTERVAL = Duration.ofMillis(10);
+
+    private final AtomicInteger polls = new AtomicInteger();
+    private final ManualScheduler scheduler = new ManualScheduler();
+    private final PollingPublisher<Integer> publisher = new PollingPublisher<>(
+            () -> completedFuture(polls.incrementAndGet()), INTERVAL, scheduler);
+
+    @Test
+    public void shouldPollOnlyOnDemand() throws Exception {
+        var subscriber = new TestSubscriber();
+        publisher.subscribe(subscriber);
+        scheduler.advance(Duration.ofSeconds(1));
+        assertEquals(0, polls.get());
+
+        subscriber.subscription.request(2);
+        scheduler.advance(Duration.ZERO);
+        assertEquals(List.of(1), subscriber.values);
+        scheduler.advance(INTERVAL);
+        assertEquals(List.of(1, 2), subscriber.values);
+
+        scheduler.advance(Duration.ofSeconds(1));
+        assertEquals(2, polls.get());
+        assertEquals(0, scheduler.pending());
+    }
+
+    @Test
+    public void laggingSubscriberShouldReceiveLatestSample() throws Exception {
+        var fast = new TestSubscriber();
+        var slow = new TestSubscriber();
+        publisher.subscribe(fast);
+        publisher.subscribe(slow);
+
+        slow.subscription.request(1);
+        scheduler.advance(Duration.ZERO);
+        fast.subscription.request(5);
+        scheduler.advance(Duration.ofSeconds(1));
+        slow.subscription.request(1);
+
+        assertEquals(List.of(1, 2, 3, 4, 5), fast.values);
+        assertEquals(List.of(1, 5), slow.values);
+    }
+
+    @Test
+    public void cancelShouldUnsubscribe() throws Exception {
+        var subscriber = new TestSubscriber();
+        publisher.subscribe(subscriber);
+
+        subscriber.subscription.cancel();
+
+        assertEquals(0, publisher.subscribers());
+    }
+
+    @Test
+    public void nonPositiveRequestShouldFail() throws Exception {
+        var subscriber = new TestSubscriber();
+        publisher.subscribe(subscriber);
+
+        subscriber.subscription.request(0);
+
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+        assertEquals(0, publisher.subscribers());
+    }
+
+    private static class TestSubscriber implements Flow.Subscriber<Integer> {
+
+        private volatile Flow.Subscription subscription;
+        private final List<Integer> values = new CopyOnWriteArrayList<>();
+        private volatile Throwable error;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(Integer item) {
+            values.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package de.malkusch.niu;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.commons.lang3.time.StopWatch;
+import org.junit.jupiter.api.Test;
+
+import de.malkusch.niu.RateLimiter.Configuration;
+import de.malkusch.niu.RateLimiter.Limit;
+
+public class RateLimiterTest {
+
+    private final RateLimiter limiter = new RateLimiter(
+            new Configuration(Map.of("account", new Limit(100, 1)), new Limit(10, 2)));
+
+    @Test
+    public void burstShouldNotWait() throws Exception {
+        var stopwatch = StopWatch.createStarted();
+        limiter.acquire("api");
+        limiter.acquire("api");
+
+        assertTrue(stopwatch.getTime(MILLISECONDS) < 50);
+    }
+
+    @Test
+    public void exceedingRateShouldWait() throws Exception {
+        var stopwatch = StopWatch.createStarted();
+        for (var i = 0; i < 4; i++) {
+            limiter.acquire("api");
+        }
+
+        assertTrue(stopwatch.getTime(MILLISECONDS) >= 150, "Too fast: " + stopwatch.getTime(MILLISECONDS));
+    }
+
+    @Test
+    public void hostsShouldBeLimitedIndependently() throws Exception {
+        limiter.acquire("api");
+        limiter.acquire("api");
+
+        var stopwatch = StopWatch.createStarted();
+        limiter.acquire("account");
+
+        assertTrue(stopwatch.getTime(MILLISECONDS) < 50);
+    }
+
+    @Test
+    public void asyncAcquireShouldNotBlock() throws Exception {
+        limiter.acquire("api");
+        limiter.acquire("api");
+
+        var acquired = limiter.acquireAsync("api");
+        assertFalse(acquired.isDone());
+
+        acquired.get();
+    }
+
+    @Test
+    public void tooManyRequestsShouldLowerRate() {
+        limiter.onResponse("api", 429);
+        limiter.onResponse("api", 429);
+        assertEquals(5, limiter.rate("api"), 0.001);
+
+        for (var i = 0; i < 200; i++) {
+            limiter.onResponse("api", 200);
+        }
+        assertEquals(10, limiter.rate("api"), 0.001);
+    }
+
+    @Test
+    public void disabledShouldNotLimit() throws Exception {
+        for (var i = 0; i < 100; i++) {
+            assertTrue(RateLimiter.DISABLED.acquireAsync("api").isDone());
+        }
+    }
+
+    @Test
+    public void tokenBeyondDeadlineShouldFailWithoutTakingIt() throws Exception {
+        limiter.acquire("api");
+        limiter.acquire("api");
+        var deadline = Deadline.after(Duration.ofMillis(50));
+
+        assertThrows(DeadlineExceededException.class, () -> limiter.acquire("api", deadline));
+        var e = assertThrows(ExecutionException.class, () -> limiter.acquireAsync("api", deadline).get());
+        assertInstanceOf(DeadlineExceededException.class, e.getCause());
+
+        var stopwatch = StopWatch.createStarted();
+        limiter.acquire("api");
+        assertTrue(stopwatch.getTime(MILLISECONDS) < 200, "Too slow: " + stopwatch.getTime(MILLISECONDS));
+    }
+}
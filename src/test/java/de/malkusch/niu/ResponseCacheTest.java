@@ -0,0 +1,154 @@
+package de.malkusch.niu;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.failedFuture;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class ResponseCacheTest {
+
+    private static final String CACHED_URL = "http://example.org/cached";
+    private static final String UNCACHED_URL = "http://example.org/uncached";
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private static ResponseCache cache(Duration ttl, int maxSize) {
+        return new ResponseCache(new ResponseCache.Configuration(Map.of(CACHED_URL, ttl), maxSize));
+    }
+
+    private String load() {
+        return "Test" + loads.incrementAndGet();
+    }
+
+    @Test
+    void shouldCacheWithinTtl() throws Exception {
+        var cache = cache(Duration.ofMinutes(1), 10);
+
+        var first = cache.get(String.class, CACHED_URL + "?sn=1", null, this::load);
+        var second = cache.get(String.class, CACHED_URL + "?sn=1", null, this::load);
+
+        assertEquals("Test1", first);
+        assertEquals("Test1", second);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void shouldSeparateKeys() throws Exception {
+        var cache = cache(Duration.ofMinutes(1), 10);
+
+        cache.get(String.class, CACHED_URL + "?sn=1", null, this::load);
+        cache.get(String.class, CACHED_URL + "?sn=2", null, this::load);
+        cache.get(String.class, CACHED_URL, Form.of(new Field("sn", "1")), this::load);
+
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void shouldExpireAfterTtl() throws Exception {
+        var cache = cache(Duration.ofMillis(10), 10);
+
+        cache.get(String.class, CACHED_URL, null, this::load);
+        Thread.sleep(50);
+        var response = cache.get(String.class, CACHED_URL, null, this::load);
+
+        assertEquals("Test2", response);
+    }
+
+    @Test
+    void shouldBypassUnconfiguredEndpoint() throws Exception {
+        var cache = cache(Duration.ofMinutes(1), 10);
+
+        cache.get(String.class, UNCACHED_URL, null, this::load);
+        cache.get(String.class, UNCACHED_URL, null, this::load);
+
+        assertEquals(2, loads.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void shouldNotCacheFailures() throws Exception {
+        var cache = cache(Duration.ofMinutes(1), 10);
+
+        assertThrows(IOException.class, () -> cache.get(String.class, CACHED_URL, null, () -> {
+            throw new IOException();
+        }));
+        var response = cache.get(String.class, CACHED_URL, null, this::load);
+
+        assertEquals("Test1", response);
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsed() throws Exception {
+        var cache = cache(Duration.ofMinutes(1), 2);
+
+        cache.get(String.class, CACHED_URL + "?sn=1", null, this::load);
+        cache.get(String.class, CACHED_URL + "?sn=2", null, this::load);
+        cache.get(String.class, CACHED_URL + "?sn=1", null, this::load);
+        cache.get(String.class, CACHED_URL + "?sn=3", null, this::load);
+        cache.get(String.class, CACHED_URL + "?sn=1", null, this::load);
+        cache.get(String.class, CACHED_URL + "?sn=2", null, this::load);
+
+        assertEquals(2, cache.size());
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    void shouldCoalesceConcurrentRequests() throws Exception {
+        var cache = cache(Duration.ZERO, 10);
+        var pending = new CompletableFuture<String>();
+
+        var first = cache.getAsync(String.class, CACHED_URL, null, () -> {
+            loads.incrementAndGet();
+            return pending;
+        });
+        var second = cache.getAsync(String.class, CACHED_URL, null, () -> completedFuture(load()));
+        pending.complete("Test");
+
+        assertEquals("Test", first.get());
+        assertEquals("Test", second.get());
+        assertEquals(1, loads.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void shouldShareFailureWithWaiters() throws Exception {
+        var cache = cache(Duration.ofMinutes(1), 10);
+        var pending = new CompletableFuture<String>();
+
+        var first = cache.getAsync(String.class, CACHED_URL, null, () -> pending);
+        var second = cache.getAsync(String.class, CACHED_URL, null, () -> failedFuture(new IllegalStateException()));
+        pending.completeExceptionally(new IOException());
+
+        assertEquals(IOException.class, assertThrows(ExecutionException.class, first::get).getCause().getClass());
+        assertEquals(IOException.class, assertThrows(ExecutionException.class, second::get).getCause().getClass());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void waitersShouldBeBoundedByTheirDeadline() throws Exception {
+        var cache = cache(Duration.ofMinutes(1), 10);
+        var pending = new CompletableFuture<String>();
+        var owner = cache.getAsync(String.class, CACHED_URL, null, () -> pending);
+
+        var deadline = Deadline.after(Duration.ofMillis(50));
+        assertThrows(DeadlineExceededException.class,
+                () -> cache.get(String.class, CACHED_URL, null, deadline, this::load));
+        var waiter = cache.getAsync(String.class, CACHED_URL, null, deadline, () -> completedFuture(load()));
+        assertInstanceOf(DeadlineExceededException.class,
+                assertThrows(ExecutionException.class, waiter::get).getCause());
+
+        pending.complete("Test");
+        assertEquals("Test", owner.get());
+        assertEquals(0, loads.get());
+    }
+}
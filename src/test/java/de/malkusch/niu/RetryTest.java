@@ -0,0 +1,170 @@
+package de.malkusch.niu;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.Test;
+
+import de.malkusch.niu.Retry.Configuration;
+import de.malkusch.niu.Retry.FailSafeRetry;
+
+public class RetryTest {
+
+    @Test
+    public void delayShouldGrowExponentially() {
+        var retry = new FailSafeRetry(new Configuration(5, Duration.ofMillis(100), Duration.ofMillis(500), 0));
+
+        assertEquals(Duration.ofMillis(100), retry.delay(1, new IOException()));
+        assertEquals(Duration.ofMillis(200), retry.delay(2, new IOException()));
+        assertEquals(Duration.ofMillis(400), retry.delay(3, new IOException()));
+        assertEquals(Duration.ofMillis(500), retry.delay(4, new IOException()));
+    }
+
+    @Test
+    public void jitterShouldShortenDelay() {
+        var retry = new FailSafeRetry(new Configuration(5, Duration.ofMillis(100), Duration.ofMillis(500), 0.5));
+
+        for (var i = 0; i < 100; i++) {
+            var delay = retry.delay(1, new IOException()).toMillis();
+            assertTrue(delay >= 50 && delay <= 100, "delay out of range: " + delay);
+        }
+    }
+
+    @Test
+    public void retryAfterShouldOverrideDelay() {
+        var retry = new FailSafeRetry(new Configuration(5, Duration.ofMillis(100), Duration.ofSeconds(5), 0.5));
+
+        var delay = retry.delay(3, new HttpStatusException("any", 429, Duration.ofSeconds(2)));
+
+        assertEquals(Duration.ofSeconds(2), delay);
+    }
+
+    @Test
+    public void budgetShouldLimitRetriesToRatio() {
+        var budget = new RetryBudget(0.5, 0, 1);
+        assertTrue(budget.tryWithdraw());
+        assertFalse(budget.tryWithdraw());
+
+        budget.deposit();
+        assertFalse(budget.tryWithdraw());
+        budget.deposit();
+        assertTrue(budget.tryWithdraw());
+    }
+
+    @Test
+    public void exhaustedBudgetShouldStopRetrying() throws Exception {
+        var budget = new RetryBudget(0, 0, 1);
+        var retry = new FailSafeRetry(new Configuration(3, Duration.ZERO), budget);
+        var attempts = new int[1];
+
+        try {
+            retry.retry(() -> {
+                attempts[0]++;
+                throw new IOException();
+            });
+
+        } catch (IOException e) {
+            // expected
+        }
+
+        assertEquals(2, attempts[0]);
+    }
+
+    @Test
+    public void exhaustedRetriesShouldWithdrawOnlyRetriesFromBudget() throws Exception {
+        var budget = new RetryBudget(0, 0, 3);
+        var retry = new FailSafeRetry(new Configuration(2, Duration.ZERO), budget);
+        var attempts = new int[1];
+
+        assertThrows(IOException.class, () -> retry.retry(() -> {
+            attempts[0]++;
+            throw new IOException();
+        }));
+
+        assertEquals(3, attempts[0]);
+        assertTrue(budget.tryWithdraw());
+        assertFalse(budget.tryWithdraw());
+    }
+
+    @Test
+    public void deadlineShouldFailFastWhenDelayDoesntFit() {
+        var retry = new FailSafeRetry(new Configuration(3, Duration.ofSeconds(1)), new RetryBudget(1, 0, 10));
+        var attempts = new int[1];
+        var started = System.nanoTime();
+
+        var e = assertThrows(DeadlineExceededException.class,
+                () -> retry.retry(Deadline.after(Duration.ofMillis(500)), () -> {
+                    attempts[0]++;
+                    throw new IOException("failed");
+                }));
+
+        assertEquals(1, attempts[0]);
+        assertEquals("failed", e.getCause().getMessage());
+        assertTrue(Duration.ofNanos(System.nanoTime() - started).compareTo(Duration.ofMillis(500)) < 0);
+    }
+
+    @Test
+    public void deadlineShouldAllowRetriesWhichFit() throws Exception {
+        var retry = new FailSafeRetry(new Configuration(3, Duration.ofMillis(10)), new RetryBudget(1, 0, 10));
+        var attempts = new int[1];
+
+        var result = retry.retry(Deadline.after(Duration.ofSeconds(5)), () -> {
+            if (attempts[0]++ < 2) {
+                throw new IOException();
+            }
+            return "ok";
+        });
+
+        assertEquals("ok", result);
+        assertEquals(3, attempts[0]);
+    }
+
+    @Test
+    public void deadlineShouldWaitBackoffAndRetryAfter() throws Exception {
+        var retry = new FailSafeRetry(new Configuration(3, Duration.ofMillis(50), Duration.ofSeconds(1), 0),
+                new RetryBudget(1, 0, 10));
+        var attempts = new ArrayList<Long>();
+
+        var result = retry.retry(Deadline.after(Duration.ofSeconds(5)), () -> {
+            attempts.add(System.nanoTime());
+            if (attempts.size() == 1) {
+                throw new IOException();
+            }
+            if (attempts.size() == 2) {
+                throw new HttpStatusException("any", 429, Duration.ofMillis(300));
+            }
+            return "ok";
+        });
+
+        assertEquals("ok", result);
+        assertTrue(attempts.get(1) - attempts.get(0) >= Duration.ofMillis(50).toNanos());
+        assertTrue(attempts.get(2) - attempts.get(1) >= Duration.ofMillis(300).toNanos());
+    }
+
+    @Test
+    public void deadlineShouldFailFastWhenRetryAfterDoesntFit() {
+        var retry = new FailSafeRetry(new Configuration(3, Duration.ofMillis(50), Duration.ofSeconds(5), 0),
+                new RetryBudget(1, 0, 10));
+        var attempts = new int[1];
+        var started = System.nanoTime();
+
+        var e = assertThrows(DeadlineExceededException.class,
+                () -> retry.retry(Deadline.after(Duration.ofSeconds(2)), () -> {
+                    if (attempts[0]++ == 0) {
+                        throw new IOException();
+                    }
+                    throw new HttpStatusException("any", 503, Duration.ofSeconds(3));
+                }));
+
+        assertEquals(2, attempts[0]);
+        assertInstanceOf(HttpStatusException.class, e.getCause());
+        assertTrue(Duration.ofNanos(System.nanoTime() - started).compareTo(Duration.ofSeconds(2)) < 0);
+    }
+}
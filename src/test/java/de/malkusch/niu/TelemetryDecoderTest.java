@@ -0,0 +1,76 @@
+package de.malkusch.niu;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+
+import org.junit.jupiter.api.Test;
+
+import de.malkusch.niu.Niu.BatteryInfo;
+import de.malkusch.niu.Niu.VehicleInfo;
+import tools.jackson.databind.ObjectMapper;
+
+public class TelemetryDecoderTest {
+
+    private final ObjectMapper mapper = NiuTransport.newMapper();
+
+    private byte[] resource(String name) throws Exception {
+        try (var resource = getClass().getResourceAsStream(name)) {
+            return resource.readAllBytes();
+        }
+    }
+
+    @Test
+    public void shouldDecodeIndexInfo() throws Exception {
+        var info = mapper.readValue(resource("index_info.json"), VehicleInfo.class);
+
+        assertEquals(new VehicleInfo.Battery(false, 87, 96.4), info.battery());
+        assertEquals(new VehicleInfo.Position(52.520008, 13.404954), info.position());
+        assertEquals(100, info.ecuBatteryCharge());
+        assertEquals(Instant.ofEpochMilli(1735689590000L), info.gpsTimestamp());
+        assertEquals(Instant.ofEpochMilli(1735689595000L), info.gsmTimestamp());
+        assertEquals(Instant.ofEpochMilli(1735689600000L), info.time());
+        assertEquals(3.5, info.leftTime());
+        assertTrue(info.isConnected());
+        assertEquals(52, info.estimatedMileage());
+        assertEquals(1, info.ss_online_sta());
+        assertEquals(0, info.status());
+    }
+
+    @Test
+    public void shouldDecodeBatteryInfo() throws Exception {
+        var info = mapper.readValue(resource("battery_info.json"), BatteryInfo.class);
+
+        assertEquals(new BatteryInfo(false, 87, 21, 96.4, 0), info);
+    }
+
+    @Test
+    public void missingBatteriesShouldDecodeWithoutBattery() {
+        var info = mapper.readValue("{\"status\":0,\"data\":{\"batteries\":null,\"postion\":{}}}".getBytes(UTF_8),
+                VehicleInfo.class);
+
+        assertNull(info.battery());
+    }
+
+    @Test
+    public void nullScalarsShouldBeZero() {
+        var info = mapper.readValue(
+                "{\"data\":{\"batteries\":{\"compartmentA\":{}},\"postion\":{},\"nowSpeed\":null}}".getBytes(UTF_8),
+                VehicleInfo.class);
+
+        assertEquals(0, info.nowSpeed());
+        assertFalse(info.battery().isCharging());
+        assertEquals(0, info.status());
+    }
+
+    @Test
+    public void missingObjectShouldFail() {
+        assertThrows(NullPointerException.class,
+                () -> mapper.readValue("{\"data\":{\"batteries\":{}}}".getBytes(UTF_8), BatteryInfo.class));
+    }
+}
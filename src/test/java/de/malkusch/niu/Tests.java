@@ -1,5 +1,6 @@
 package de.malkusch.niu;
 
+import java.io.ByteArrayInputStream;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
@@ -11,6 +12,7 @@ import java.time.Instant;
 import java.util.Optional;
 
 import static de.malkusch.niu.Retry.Configuration.DISABLED;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -23,22 +25,30 @@ public class Tests {
     private static final Duration EXPIRATION_WINDOW = Duration.ofSeconds(10);
 
     public static Authentication authentication(String access_token, Instant token_expires_in) {
+        return authentication(mock(HttpClient.class), access_token, token_expires_in, EXPIRATION_WINDOW,
+                Duration.ZERO);
+    }
+
+    public static Authentication authentication(HttpClient httpClient, String access_token,
+            Instant token_expires_in, Duration expirationWindow, Duration latency) {
         try {
-            var httpClient = mock(HttpClient.class);
             when(httpClient.connectTimeout()).thenReturn(Optional.of(Duration.ofMillis(10)));
             var client = new Client(httpClient, Retry.build(DISABLED), "Any");
 
             var login = Files.readString(Paths.get(AuthenticationTest.class.getResource("login.json").toURI()))
                     .replace("{{access_token}}", access_token)
-                    .replace("{{token_expires_in}}", Long.toString(token_expires_in.toEpochMilli()));
+                    .replace("{{token_expires_in}}", Long.toString(token_expires_in.getEpochSecond()));
 
             var response = mock(HttpResponse.class);
-            when(response.body()).thenReturn(login);
+            when(response.body()).thenAnswer(invocation -> new ByteArrayInputStream(login.getBytes(UTF_8)));
             when(response.statusCode()).thenReturn(200);
 
-            when(httpClient.send(any(HttpRequest.class), any(BodyHandler.class))).thenReturn(response);
+            when(httpClient.send(any(HttpRequest.class), any(BodyHandler.class))).thenAnswer(invocation -> {
+                Thread.sleep(latency.toMillis());
+                return response;
+            });
 
-            return new Authentication(ACCOUNT, PASSWORD, COUNTRY_CODE, EXPIRATION_WINDOW, client);
+            return new Authentication(ACCOUNT, PASSWORD, COUNTRY_CODE, expirationWindow, client);
         } catch (Exception e) {
             throw new IllegalStateException(e);
         }
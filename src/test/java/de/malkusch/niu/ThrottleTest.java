@@ -0,0 +1,94 @@
+package de.malkusch.niu;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.jupiter.api.Test;
+
+public class ThrottleTest {
+
+    @Test
+    void shouldNotExceedLimit() throws Exception {
+        var throttle = new Throttle(2);
+        var pending = new ArrayList<CompletableFuture<Integer>>();
+        var results = new ArrayList<CompletableFuture<Integer>>();
+
+        for (var i = 0; i < 5; i++) {
+            results.add(throttle.submit(() -> {
+                var future = new CompletableFuture<Integer>();
+                pending.add(future);
+                return future;
+            }));
+        }
+        assertEquals(2, throttle.inFlight());
+        assertEquals(2, pending.size());
+
+        complete(pending, 0, 2);
+        assertEquals(2, throttle.inFlight());
+        assertEquals(4, pending.size());
+
+        complete(pending, 2, 4);
+        assertEquals(1, throttle.inFlight());
+        complete(pending, 4, 5);
+        assertEquals(0, throttle.inFlight());
+        for (var i = 0; i < 5; i++) {
+            assertEquals(Integer.valueOf(i), results.get(i).get());
+        }
+    }
+
+    @Test
+    void shouldReleaseOnFailure() throws Exception {
+        var throttle = new Throttle(1);
+
+        var failed = throttle.submit(() -> CompletableFuture.failedFuture(new IOException()));
+        var succeeded = throttle.submit(() -> CompletableFuture.completedFuture("Test"));
+
+        var e = assertThrows(ExecutionException.class, failed::get);
+        assertTrue(e.getCause() instanceof IOException);
+        assertEquals("Test", succeeded.get());
+        assertEquals(0, throttle.inFlight());
+    }
+
+    @Test
+    void acquireShouldWaitForRelease() throws Exception {
+        var throttle = new Throttle(1);
+        throttle.acquireInterruptibly();
+
+        var waiting = throttle.acquire();
+        assertFalse(waiting.isDone());
+
+        throttle.release();
+        assertTrue(waiting.isDone());
+        assertEquals(1, throttle.inFlight());
+    }
+
+    @Test
+    void synchronousCompletionsShouldNotGrowStack() throws Exception {
+        var throttle = new Throttle(1);
+        throttle.acquireInterruptibly();
+        var results = new ArrayList<CompletableFuture<Integer>>();
+        for (var i = 0; i < 100_000; i++) {
+            var value = i;
+            results.add(throttle.submit(() -> CompletableFuture.completedFuture(value)));
+        }
+
+        throttle.release();
+
+        assertEquals(0, throttle.inFlight());
+        assertEquals(Integer.valueOf(99_999), results.get(99_999).get());
+    }
+
+    private static void complete(List<CompletableFuture<Integer>> pending, int from, int to) {
+        for (var i = from; i < to; i++) {
+            pending.get(i).complete(i);
+        }
+    }
+}
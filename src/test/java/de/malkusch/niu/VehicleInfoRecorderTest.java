@@ -0,0 +1,93 @@
+package de.malkusch.niu;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.malkusch.niu.Niu.VehicleInfo;
+
+public class VehicleInfoRecorderTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void shouldScanBySerialNumberAndTime() throws Exception {
+        try (var recorder = new VehicleInfoRecorder(directory.resolve("segment"), 10)) {
+            recorder.append("A", info(1000, 10));
+            recorder.append("B", info(1000, 20));
+            recorder.append("A", info(2000, 30));
+            recorder.append("A", info(3000, 40));
+
+            var speeds = new ArrayList<Integer>();
+            var cursor = recorder.scan("A", Instant.ofEpochMilli(1000), Instant.ofEpochMilli(3000));
+            while (cursor.next()) {
+                speeds.add(cursor.nowSpeed());
+            }
+
+            assertEquals(List.of(10, 30), speeds);
+        }
+    }
+
+    @Test
+    public void shouldRestoreVehicleInfo() throws Exception {
+        var info = info(1000, 10);
+        try (var recorder = new VehicleInfoRecorder(directory.resolve("segment"), 10)) {
+            recorder.append("A", info);
+
+            var cursor = recorder.scan("A", Instant.EPOCH, Instant.MAX);
+            assertTrue(cursor.next());
+            assertEquals(info, cursor.vehicleInfo());
+            assertFalse(cursor.next());
+        }
+    }
+
+    @Test
+    public void shouldReopenSegment() throws Exception {
+        var segment = directory.resolve("segment");
+        try (var recorder = new VehicleInfoRecorder(segment, 10)) {
+            recorder.append("A", info(1000, 10));
+        }
+
+        try (var recorder = new VehicleInfoRecorder(segment, 1)) {
+            assertEquals(10, recorder.capacity());
+            assertEquals(1, recorder.size());
+            recorder.append("A", info(2000, 20));
+            assertEquals(2, recorder.size());
+        }
+    }
+
+    @Test
+    public void fullSegmentShouldFail() throws Exception {
+        try (var recorder = new VehicleInfoRecorder(directory.resolve("segment"), 1)) {
+            recorder.append("A", info(1000, 10));
+
+            assertThrows(IOException.class, () -> recorder.append("A", info(2000, 20)));
+        }
+    }
+
+    @Test
+    public void foreignFileShouldFail() throws Exception {
+        var segment = directory.resolve("segment");
+        Files.write(segment, new byte[1024]);
+
+        assertThrows(IOException.class, () -> new VehicleInfoRecorder(segment, 10));
+    }
+
+    private static VehicleInfo info(long time, int speed) {
+        return new VehicleInfo(new VehicleInfo.Battery(true, 50, 90.5), new VehicleInfo.Position(52.5200066, 13.404954),
+                speed, 1, 100, 4, Instant.ofEpochMilli(time - 1), 20, Instant.ofEpochMilli(time - 2), 0, 10.5, true,
+                40, 1, Instant.ofEpochMilli(time));
+    }
+}
@@ -0,0 +1,128 @@
+package de.malkusch.niu;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.failedFuture;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import de.malkusch.niu.Niu.VehicleInfo;
+import de.malkusch.niu.Niu.WatchListener;
+
+public class WatcherTest {
+
+    private static final Watcher.Intervals INTERVALS = new Watcher.Intervals(Duration.ofMillis(10),
+            Duration.ofMillis(20), Duration.ofMillis(30));
+
+    @Test
+    public void intervalShouldAdaptToVehicleState() {
+        assertEquals(INTERVALS.active(), INTERVALS.interval(info(10, false, false)));
+        assertEquals(INTERVALS.active(), INTERVALS.interval(info(0, true, false)));
+        assertEquals(INTERVALS.connected(), INTERVALS.interval(info(0, false, true)));
+        assertEquals(INTERVALS.idle(), INTERVALS.interval(info(0, false, false)));
+    }
+
+    @Test
+    public void shouldNotifyOnlyChanges() {
+        var values = List.of(info(1, false, false), info(1, false, false), info(2, false, false),
+                info(2, false, false), info(0, false, false));
+        var polls = new AtomicInteger();
+        var changes = new ArrayList<VehicleInfo>();
+        var scheduler = new ManualScheduler();
+
+        var watch = new Watcher("sn", sn -> completedFuture(values.get(polls.getAndIncrement())), changes::add,
+                INTERVALS, scheduler).start();
+
+        for (var i = 0; i < values.size(); i++) {
+            assertTrue(scheduler.runNext());
+        }
+        watch.close();
+
+        assertEquals(List.of(values.get(0), values.get(2), values.get(4)), changes);
+    }
+
+    @Test
+    public void shouldPollAtIntervalOfVehicleState() {
+        var polls = new AtomicInteger();
+        var scheduler = new ManualScheduler();
+
+        var watch = new Watcher("sn", sn -> {
+            polls.incrementAndGet();
+            return completedFuture(info(0, false, false));
+        }, info -> {
+        }, INTERVALS, scheduler).start();
+        scheduler.runNext();
+
+        // The idle interval of 30ms with 10% jitter
+        scheduler.advance(Duration.ofMillis(26));
+        assertEquals(1, polls.get());
+        scheduler.advance(Duration.ofMillis(8));
+        assertEquals(2, polls.get());
+        watch.close();
+    }
+
+    @Test
+    public void shouldKeepWatchingAfterFailure() {
+        var polls = new AtomicInteger();
+        var failures = new AtomicInteger();
+        var changes = new AtomicInteger();
+        var listener = new WatchListener() {
+
+            @Override
+            public void onChange(VehicleInfo info) {
+                changes.incrementAndGet();
+            }
+
+            @Override
+            public void onFailure(IOException failure) {
+                failures.incrementAndGet();
+            }
+        };
+        var scheduler = new ManualScheduler();
+
+        var watch = new Watcher("sn", sn -> {
+            return polls.getAndIncrement() == 0 ? failedFuture(new IOException())
+                    : completedFuture(info(1, false, false));
+        }, listener, INTERVALS, scheduler).start();
+
+        scheduler.runNext();
+        scheduler.runNext();
+        watch.close();
+
+        assertEquals(1, failures.get());
+        assertEquals(1, changes.get());
+    }
+
+    @Test
+    public void closeShouldStopPolling() {
+        var polls = new AtomicInteger();
+        var pending = new CompletableFuture<VehicleInfo>();
+        var scheduler = new ManualScheduler();
+        var watch = new Watcher("sn", sn -> {
+            polls.incrementAndGet();
+            return pending;
+        }, info -> {
+        }, INTERVALS, scheduler).start();
+        scheduler.runNext();
+
+        watch.close();
+        pending.complete(info(1, false, false));
+
+        assertEquals(0, scheduler.pending());
+        assertEquals(1, polls.get());
+    }
+
+    private static VehicleInfo info(int speed, boolean charging, boolean connected) {
+        return new VehicleInfo(new VehicleInfo.Battery(charging, 50, 90), new VehicleInfo.Position(52.5, 13.4), speed,
+                0, 100, 4, Instant.EPOCH, 20, Instant.EPOCH, 0, 10, connected, 40, 1, Instant.EPOCH);
+    }
+}